@@ -0,0 +1,701 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Offline audit tool for backpacks stored in a stopped server's world folders
+ * Run with: java -jar InTheBack.jar [options] <world-folder>...
+ *
+ * Walks playerdata/*.dat and every region .mca file in parallel, validates the
+ * payload of every backpack it finds, reports duplicated backpack IDs and can
+ * optionally repair them and sweep unreferenced entries from the item pool.
+ *
+ * This class has no Bukkit dependencies so it can run without a server.
+ */
+public class BackpackAuditTool {
+
+    private static final String BUKKIT_VALUES_TAG = "PublicBukkitValues";
+    private static final String BACKPACK_KEY = "minecraft-backpack:backpack";
+    private static final String BACKPACK_ID_KEY = "minecraft-backpack:backpack_id";
+    private static final String BACKPACK_LEVEL_KEY = "minecraft-backpack:backpack_level";
+    private static final String INVENTORY_KEY = "minecraft-backpack:inventory";
+    private static final String INVENTORY_REFS_KEY = "minecraft-backpack:inventory_refs";
+
+    private static final byte[] BACKPACK_MARKER = BACKPACK_KEY.getBytes(StandardCharsets.UTF_8);
+
+    private final ItemPool itemPool;
+    private final long maxPayloadBytes;
+    private final Map<String, List<Occurrence>> occurrencesById = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<>();
+    // Mark phase of the pool sweep: every entry some stored backpack still references
+    private final Set<String> referencedEntries = ConcurrentHashMap.newKeySet();
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder chunksScanned = new LongAdder();
+    private final LongAdder backpacksFound = new LongAdder();
+    private final LongAdder corruptPayloads = new LongAdder();
+    private final LongAdder oversizedPayloads = new LongAdder();
+    // Files, chunks and reference tables that could not be read completely
+    private final LongAdder skippedParts = new LongAdder();
+
+    // Occurrence locations that get a fresh ID during the repair pass
+    private Set<String> reassignLocations = Collections.emptySet();
+    private final Map<String, String> reassignedIds = new ConcurrentHashMap<>();
+
+    /**
+     * A single backpack item found in the world
+     */
+    private static class Occurrence {
+        final Path file;
+        final String location;
+
+        Occurrence(Path file, String location) {
+            this.file = file;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Tracks where the scanner is inside a file so every occurrence gets a stable location
+     */
+    private static class ScanContext {
+        final Path file;
+        final String prefix;
+        final boolean repair;
+        int ordinal;
+        boolean changed;
+
+        ScanContext(Path file, String prefix, boolean repair) {
+            this.file = file;
+            this.prefix = prefix;
+            this.repair = repair;
+        }
+
+        String nextLocation() {
+            return prefix + " #" + (ordinal++);
+        }
+    }
+
+    private BackpackAuditTool(ItemPool itemPool, long maxPayloadBytes) {
+        this.itemPool = itemPool;
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    public static void main(String[] args) {
+        List<Path> worlds = new ArrayList<>();
+        Path poolFile = null;
+        boolean fixDuplicateIds = false;
+        boolean sweepPool = false;
+        boolean apply = false;
+        boolean force = false;
+        long maxPayloadBytes = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--pool": poolFile = Paths.get(args[++i]); break;
+                    case "--fix-duplicate-ids": fixDuplicateIds = true; break;
+                    case "--sweep-pool": sweepPool = true; break;
+                    case "--apply": apply = true; break;
+                    case "--threads": threads = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--force": force = true; break;
+                    case "--max-payload-bytes": maxPayloadBytes = Long.parseLong(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        worlds.add(Paths.get(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e instanceof IllegalArgumentException ? e.getMessage() : "Missing option value");
+            worlds.clear();
+        }
+
+        if (worlds.isEmpty() || (sweepPool && poolFile == null) || (apply && !sweepPool)) {
+            printUsage();
+            System.exit(2);
+        }
+
+        try {
+            System.exit(run(worlds, poolFile, fixDuplicateIds, sweepPool, apply, force, threads, maxPayloadBytes));
+        } catch (Exception e) {
+            System.err.println("Audit failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java -jar InTheBack.jar [options] <world-folder>...");
+        System.err.println("  --pool <file>          plugins/InTheBack/item-pool.dat, to validate pooled backpacks");
+        System.err.println("  --fix-duplicate-ids    give every duplicated backpack but one a fresh ID");
+        System.err.println("  --sweep-pool           report pool items no scanned backpack references (needs --pool)");
+        System.err.println("  --apply                with --sweep-pool, actually remove them");
+        System.err.println("  --max-payload-bytes <n> report backpacks storing more than n bytes");
+        System.err.println("  --threads <n>          worker threads (default: all cores)");
+        System.err.println("  --force                run even if a world appears to be in use");
+    }
+
+    private static int run(List<Path> worlds, Path poolFile, boolean fixDuplicateIds, boolean sweepPool,
+                           boolean apply, boolean force, int threads, long maxPayloadBytes) throws Exception {
+        for (Path world : worlds) {
+            if (!Files.isDirectory(world)) {
+                throw new IOException(world + " is not a directory");
+            }
+            if (!force && isWorldInUse(world)) {
+                throw new IOException(world + " is locked by a running server (use --force to override)");
+            }
+        }
+
+        ItemPool pool = null;
+        if (poolFile != null) {
+            pool = new ItemPool();
+            pool.load(poolFile);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path world : worlds) {
+            files.addAll(findFiles(world));
+        }
+
+        BackpackAuditTool tool = new BackpackAuditTool(pool, maxPayloadBytes);
+        ForkJoinPool workers = new ForkJoinPool(threads);
+        long startMillis = System.currentTimeMillis();
+
+        try {
+            workers.submit(() -> files.parallelStream().forEach(file -> tool.processFile(file, false))).get();
+            tool.printReport(System.currentTimeMillis() - startMillis);
+
+            Map<String, List<Occurrence>> duplicates = tool.getDuplicates();
+            if (fixDuplicateIds && !duplicates.isEmpty()) {
+                Set<Path> affectedFiles = tool.planDuplicateRepair(duplicates);
+                int problemsBeforeRepair = tool.problems.size();
+                workers.submit(() -> affectedFiles.parallelStream().forEach(file -> tool.processFile(file, true)))
+                    .get();
+                System.out.println("Reassigned " + tool.reassignedIds.size() + " duplicated backpack IDs in "
+                    + affectedFiles.size() + " files");
+                for (String problem : tool.problems.stream().skip(problemsBeforeRepair).toList()) {
+                    System.out.println("  " + problem);
+                }
+            }
+        } finally {
+            workers.shutdown();
+        }
+
+        // Anything left unread may reference pool items, so sweeping would delete live data
+        if (sweepPool && tool.skippedParts.sum() > 0) {
+            System.out.println("Not sweeping the item pool: " + tool.skippedParts.sum()
+                + " files, chunks or reference tables could not be read");
+            sweepPool = false;
+        }
+
+        if (sweepPool) {
+            tool.sweepPool(apply);
+        }
+        if (pool != null && ((sweepPool && apply) || !tool.reassignedIds.isEmpty())) {
+            pool.save(poolFile);
+        }
+
+        return tool.problems.isEmpty() && tool.getDuplicates().isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Checks whether a server currently holds the world's session lock
+     */
+    private static boolean isWorldInUse(Path world) throws IOException {
+        Path lockFile = world.resolve("session.lock");
+        if (!Files.exists(lockFile)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Finds player data and region files below a world folder
+     */
+    private static List<Path> findFiles(Path world) throws IOException {
+        try (Stream<Path> walk = Files.walk(world)) {
+            return walk
+                .filter(Files::isRegularFile)
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    String parent = path.getParent().getFileName().toString();
+                    if (name.endsWith(".mca")) {
+                        // Points of interest never hold items
+                        return !parent.equals("poi");
+                    }
+                    return name.endsWith(".dat") && parent.equals("playerdata");
+                })
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Scans or repairs a single file, recording problems instead of failing the whole run
+     */
+    private void processFile(Path file, boolean repair) {
+        try {
+            if (file.getFileName().toString().endsWith(".mca")) {
+                processRegion(file, repair);
+            } else {
+                processPlayerData(file, repair);
+            }
+            if (!repair) {
+                filesScanned.increment();
+            }
+        } catch (Exception e) {
+            problems.add(file + ": unreadable file (" + e.getMessage() + ")");
+            skippedParts.increment();
+        }
+    }
+
+    private void processPlayerData(Path file, boolean repair) throws IOException {
+        Map<String, Object> root;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            root = NbtIo.readRoot(in);
+        }
+
+        ScanContext context = new ScanContext(file, file.toString(), repair);
+        visit(root, context);
+
+        if (context.changed) {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                NbtIo.writeRoot(out, root);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void processRegion(Path file, boolean repair) throws IOException {
+        RegionFile region = RegionFile.read(file);
+        int[] regionCoordinates = parseRegionCoordinates(file);
+        boolean changed = false;
+
+        for (int i = 0; i < RegionFile.CHUNK_COUNT; i++) {
+            if (region.isExternal(i)) {
+                problems.add(file + " chunk " + i + ": stored in an external .mcc file, not scanned");
+                skippedParts.increment();
+                continue;
+            }
+            if (!region.hasChunk(i)) {
+                continue;
+            }
+
+            int chunkX = regionCoordinates[0] * 32 + (i & 31);
+            int chunkZ = regionCoordinates[1] * 32 + (i >> 5);
+            String prefix = file + " chunk " + chunkX + "," + chunkZ;
+
+            byte[] nbt;
+            try {
+                nbt = region.readChunk(i);
+            } catch (IOException e) {
+                problems.add(prefix + ": unreadable chunk (" + e.getMessage() + ")");
+                skippedParts.increment();
+                continue;
+            }
+            if (!repair) {
+                chunksScanned.increment();
+            }
+
+            // Most chunks hold no backpacks, so skip parsing them entirely
+            if (!contains(nbt, BACKPACK_MARKER)) {
+                continue;
+            }
+
+            Map<String, Object> root = NbtIo.readRoot(new DataInputStream(new ByteArrayInputStream(nbt)));
+            ScanContext context = new ScanContext(file, prefix, repair);
+            visit(root, context);
+
+            if (context.changed) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(nbt.length);
+                NbtIo.writeRoot(new DataOutputStream(out), root);
+                region.writeChunk(i, out.toByteArray());
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            region.save();
+        }
+    }
+
+    private static int[] parseRegionCoordinates(Path file) {
+        // Region files are named r.<x>.<z>.mca
+        String[] parts = file.getFileName().toString().split("\\.");
+        try {
+            return new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        } catch (RuntimeException e) {
+            return new int[] {0, 0};
+        }
+    }
+
+    private static boolean contains(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks an NBT tree looking for items that carry backpack data
+     */
+    private void visit(Object tag, ScanContext context) {
+        if (tag instanceof NbtIo.NbtList) {
+            for (Object element : (NbtIo.NbtList) tag) {
+                visit(element, context);
+            }
+            return;
+        }
+
+        Map<String, Object> compound = NbtIo.asCompound(tag);
+        if (compound == null) {
+            return;
+        }
+
+        Map<String, Object> bukkitValues = NbtIo.asCompound(compound.get(BUKKIT_VALUES_TAG));
+        if (bukkitValues != null && bukkitValues.containsKey(BACKPACK_KEY)) {
+            inspectBackpack(bukkitValues, context);
+        }
+
+        for (Object child : compound.values()) {
+            visit(child, context);
+        }
+    }
+
+    private void inspectBackpack(Map<String, Object> values, ScanContext context) {
+        String location = context.nextLocation();
+        Object idTag = values.get(BACKPACK_ID_KEY);
+        String backpackId = idTag instanceof String ? (String) idTag : null;
+
+        if (context.repair) {
+            if (backpackId != null && reassignLocations.contains(location)) {
+                reassignId(values, backpackId, location);
+                context.changed = true;
+            }
+            return;
+        }
+
+        backpacksFound.increment();
+
+        if (backpackId == null) {
+            problems.add(location + ": backpack has no ID (one is assigned when it is next opened)");
+        } else {
+            occurrencesById.computeIfAbsent(backpackId, id -> Collections.synchronizedList(new ArrayList<>()))
+                .add(new Occurrence(context.file, location));
+        }
+
+        Object levelTag = values.get(BACKPACK_LEVEL_KEY);
+        int level = levelTag instanceof Integer ? (Integer) levelTag : 0;
+        if (level < 0 || level > 3) {
+            problems.add(location + ": backpack " + backpackId + " has invalid level " + level);
+        }
+
+        String error = null;
+        byte[] payload = null;
+        if (values.get(INVENTORY_KEY) instanceof byte[]) {
+            payload = (byte[]) values.get(INVENTORY_KEY);
+            error = validateInlinePayload(payload);
+        } else if (values.get(INVENTORY_REFS_KEY) instanceof byte[]) {
+            payload = (byte[]) values.get(INVENTORY_REFS_KEY);
+            error = validatePooledPayload(payload);
+        }
+
+        if (payload != null && maxPayloadBytes > 0 && payload.length > maxPayloadBytes) {
+            oversizedPayloads.increment();
+            problems.add(location + ": backpack " + backpackId + " stores " + payload.length
+                + " bytes, over the budget of " + maxPayloadBytes);
+        }
+
+        if (error != null) {
+            corruptPayloads.increment();
+            problems.add(location + ": backpack " + backpackId + " has a corrupt payload (" + error + ")");
+        }
+    }
+
+    /**
+     * Checks the framing of a BukkitObjectOutputStream payload
+     * Walks the slot markers and every item's object framing; the items themselves
+     * can only be decoded by a running server
+     * @return A description of the problem, or null if the payload looks valid
+     */
+    private static String validateInlinePayload(byte[] data) {
+        try {
+            ObjectStreamScanner scanner = new ObjectStreamScanner(data);
+            int slots = scanner.readInt();
+            if (slots < 0 || slots > BackpackItem.HUGE_BACKPACK_SIZE) {
+                return "impossible slot count " + slots;
+            }
+
+            for (int slot = 0; slot < slots; slot++) {
+                int marker;
+                try {
+                    marker = scanner.readUnsignedByte();
+                } catch (EOFException e) {
+                    return "missing slots after slot " + (slot - 1);
+                }
+                if (marker > 1) {
+                    return "invalid marker " + marker + " for slot " + slot;
+                }
+                if (marker == 1) {
+                    try {
+                        scanner.skipObject();
+                    } catch (EOFException e) {
+                        return "item in slot " + slot + " is truncated";
+                    } catch (IOException e) {
+                        return "item in slot " + slot + " is malformed: " + e.getMessage();
+                    }
+                }
+            }
+
+            if (!scanner.isAtEnd()) {
+                return "trailing data after " + slots + " slots";
+            }
+            return null;
+        } catch (EOFException e) {
+            return "truncated";
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Checks a slot-to-reference table and that every reference exists in the pool
+     * @return A description of the problem, or null if the payload is valid
+     */
+    private String validatePooledPayload(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int slots = in.readInt();
+            if (slots < 0 || slots > BackpackItem.HUGE_BACKPACK_SIZE) {
+                skippedParts.increment();
+                return "impossible slot count " + slots;
+            }
+
+            byte[] hash = new byte[ItemPool.HASH_LENGTH];
+            int missing = 0;
+            for (int i = 0; i < slots; i++) {
+                int hasItem = in.readUnsignedByte();
+                if (hasItem > 1) {
+                    skippedParts.increment();
+                    return "invalid slot marker";
+                }
+                if (hasItem == 1) {
+                    in.readFully(hash);
+                    String key = ItemPool.toKey(hash);
+                    referencedEntries.add(key);
+                    if (itemPool != null && itemPool.get(key) == null) {
+                        missing++;
+                    }
+                }
+            }
+
+            if (in.available() > 0) {
+                return "trailing data";
+            }
+            return missing > 0 ? missing + " referenced items missing from the pool" : null;
+        } catch (IOException e) {
+            skippedParts.increment();
+            return "truncated";
+        }
+    }
+
+    /**
+     * Reads the references of a pooled payload
+     */
+    private static String[] readReferences(byte[] data) throws IOException {
+        List<String> references = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int slots = in.readInt();
+            byte[] hash = new byte[ItemPool.HASH_LENGTH];
+            for (int i = 0; i < slots; i++) {
+                if (in.readBoolean()) {
+                    in.readFully(hash);
+                    references.add(ItemPool.toKey(hash));
+                }
+            }
+        }
+        return references.toArray(new String[0]);
+    }
+
+    /**
+     * Finds IDs stored in more than one place, leaving out copies that have been given a new ID
+     */
+    private Map<String, List<Occurrence>> getDuplicates() {
+        Map<String, List<Occurrence>> duplicates = new HashMap<>();
+        for (Map.Entry<String, List<Occurrence>> entry : occurrencesById.entrySet()) {
+            List<Occurrence> remaining = new ArrayList<>();
+            synchronized (entry.getValue()) {
+                for (Occurrence occurrence : entry.getValue()) {
+                    if (!reassignedIds.containsKey(occurrence.location)) {
+                        remaining.add(occurrence);
+                    }
+                }
+            }
+            if (remaining.size() > 1) {
+                duplicates.put(entry.getKey(), remaining);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Chooses which duplicated backpacks get a fresh ID
+     * The occurrence with the lowest location keeps its ID so repeated runs agree
+     * @return Files that need rewriting
+     */
+    private Set<Path> planDuplicateRepair(Map<String, List<Occurrence>> duplicates) {
+        Set<String> locations = new HashSet<>();
+        Set<Path> files = new HashSet<>();
+
+        for (List<Occurrence> occurrences : duplicates.values()) {
+            List<Occurrence> sorted = new ArrayList<>(occurrences);
+            sorted.sort(Comparator.comparing(occurrence -> occurrence.location));
+            for (Occurrence occurrence : sorted.subList(1, sorted.size())) {
+                locations.add(occurrence.location);
+                files.add(occurrence.file);
+            }
+        }
+
+        reassignLocations = locations;
+        return files;
+    }
+
+    private void reassignId(Map<String, Object> values, String oldId, String location) {
+        String newId = UUID.randomUUID().toString();
+
+        // A pooled copy must own its references under the new ID too
+        if (values.get(INVENTORY_REFS_KEY) instanceof byte[]) {
+            if (itemPool == null) {
+                problems.add(location + ": pooled backpack " + oldId + " not reassigned, run with --pool");
+                return;
+            }
+            try {
+                itemPool.setReferences(newId, readReferences((byte[]) values.get(INVENTORY_REFS_KEY)));
+            } catch (IOException | IllegalArgumentException e) {
+                problems.add(location + ": pooled backpack " + oldId + " not reassigned (" + e.getMessage() + ")");
+                return;
+            }
+        }
+
+        values.put(BACKPACK_ID_KEY, newId);
+        reassignedIds.put(location, newId);
+    }
+
+    /**
+     * Mark and sweep: removes every pool entry that no scanned backpack references
+     * Marking follows the stored reference tables rather than the pool's owner records,
+     * which are keyed by backpack ID and so cannot tell copies with a duplicated ID apart
+     * @param apply false to only report what would be removed
+     */
+    private void sweepPool(boolean apply) {
+        if (!apply) {
+            int unreferenced = 0;
+            long unreferencedBytes = 0;
+            for (String key : itemPool.getEntryKeys()) {
+                if (!referencedEntries.contains(key)) {
+                    unreferenced++;
+                    unreferencedBytes += itemPool.get(key).length;
+                }
+            }
+            System.out.println("Sweep would remove " + unreferenced + " unreferenced items (" + unreferencedBytes
+                + " bytes) from the item pool; run again with --apply to remove them");
+            return;
+        }
+
+        long storedBefore = itemPool.getStoredBytes();
+        int removedOwners = 0;
+
+        // Owner records only feed the pool statistics; drop the ones for backpacks that are gone
+        for (String owner : itemPool.getOwners()) {
+            if (!occurrencesById.containsKey(owner) && !reassignedIds.containsValue(owner)) {
+                itemPool.removeOwner(owner);
+                removedOwners++;
+            }
+        }
+
+        int removedEntries = itemPool.retainOnly(referencedEntries);
+
+        System.out.println("Swept " + removedEntries + " unreferenced items and " + removedOwners
+            + " missing backpacks from the item pool, freeing " + (storedBefore - itemPool.getStoredBytes())
+            + " bytes");
+    }
+
+    private void printReport(long elapsedMillis) {
+        System.out.println("Scanned " + filesScanned.sum() + " files and " + chunksScanned.sum() + " chunks in "
+            + elapsedMillis + " ms");
+        System.out.println("Found " + backpacksFound.sum() + " backpacks with " + occurrencesById.size()
+            + " distinct IDs");
+        System.out.println("Corrupt payloads: " + corruptPayloads.sum());
+        if (maxPayloadBytes > 0) {
+            System.out.println("Oversized payloads: " + oversizedPayloads.sum());
+        }
+
+        List<String> sortedProblems = new ArrayList<>(problems);
+        Collections.sort(sortedProblems);
+        for (String problem : sortedProblems) {
+            System.out.println("  " + problem);
+        }
+
+        Map<String, List<Occurrence>> duplicates = getDuplicates();
+        System.out.println("Duplicated backpack IDs: " + duplicates.size());
+        for (Map.Entry<String, List<Occurrence>> entry : duplicates.entrySet()) {
+            System.out.println("  " + entry.getKey() + ":");
+            List<Occurrence> occurrences = new ArrayList<>(entry.getValue());
+            occurrences.sort(Comparator.comparing(occurrence -> occurrence.location));
+            for (Occurrence occurrence : occurrences) {
+                System.out.println("    " + occurrence.location);
+            }
+        }
+    }
+}
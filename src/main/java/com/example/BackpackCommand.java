@@ -0,0 +1,43 @@
+package com.example;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handler for the /backpack command
+ */
+public class BackpackCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> SUBCOMMANDS = Collections.singletonList("stats");
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            if (!sender.hasPermission("intheback.stats")) {
+                sender.sendMessage("§cYou don't have permission to view backpack stats.");
+                return true;
+            }
+
+            for (String line : BackpackMetrics.getSummaryLines()) {
+                sender.sendMessage(line);
+            }
+            return true;
+        }
+
+        // Show usage from plugin.yml
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1 && "stats".startsWith(args[0].toLowerCase())) {
+            return SUBCOMMANDS;
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example;
+
+import org.bukkit.inventory.ItemStack;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for backpack work
+ * Events are only populated after shouldCommit() returns true, so they cost
+ * next to nothing while no recording is enabling them
+ */
+public class BackpackFlightEvents {
+
+    /**
+     * Common fields shared by all backpack events
+     */
+    @Category({"In The Back", "Backpack"})
+    @StackTrace(false)
+    public abstract static class BackpackEvent extends Event {
+
+        @Label("Backpack ID")
+        public String backpackId;
+
+        @Label("Level")
+        @Description("Backpack level (0=small, 1=medium, 2=large, 3=huge)")
+        public int level;
+
+        @Label("Slots")
+        public int slots;
+
+        @Label("Payload Size")
+        @DataAmount
+        public long payloadBytes;
+
+        /**
+         * Ends the event and commits it if a recording wants it
+         * The backpack fields are only read from the item when the event is committed
+         * @param backpack The backpack item, or null if none is known
+         * @param payloadBytes Size of the serialized payload involved, or -1 to read it from the backpack
+         */
+        public void finish(ItemStack backpack, long payloadBytes) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+
+            if (backpack != null) {
+                this.backpackId = BackpackItem.getBackpackId(backpack);
+                this.level = BackpackItem.getBackpackLevel(backpack);
+                this.slots = BackpackItem.getSlotsForLevel(level);
+            }
+            this.payloadBytes = payloadBytes >= 0 ? payloadBytes : BackpackItem.getPayloadSize(backpack);
+            commit();
+        }
+    }
+
+    @Name("intheback.BackpackSave")
+    @Label("Backpack Save")
+    @Description("Serialization of backpack contents into the item")
+    public static class Save extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackLoad")
+    @Label("Backpack Load")
+    @Description("Deserialization of backpack contents from the item")
+    public static class Load extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackUpgrade")
+    @Label("Backpack Upgrade")
+    @Description("Upgrade of a backpack to the next level, including re-saving its contents")
+    public static class Upgrade extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackOpen")
+    @Label("Backpack Open")
+    @Description("Handling of a right-click that opens a backpack")
+    public static class Open extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackClose")
+    @Label("Backpack Close")
+    @Description("Handling of a backpack inventory close, including the save")
+    public static class Close extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackUpgradePreview")
+    @Label("Backpack Upgrade Preview")
+    @Description("Crafting grid preview of a backpack upgrade")
+    public static class UpgradePreview extends BackpackEvent {
+    }
+
+    @Name("intheback.BackpackClick")
+    @Label("Backpack Click")
+    @Description("Handling of a click inside an open backpack inventory")
+    public static class Click extends BackpackEvent {
+    }
+}
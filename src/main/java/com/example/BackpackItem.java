@@ -10,9 +10,17 @@ import org.bukkit.util.io.BukkitObjectInputStream;
 import org.bukkit.util.io.BukkitObjectOutputStream;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for creating and managing backpack items with proper persistence
@@ -34,6 +42,33 @@ public class BackpackItem {
     private static final NamespacedKey BACKPACK_ID_KEY = new NamespacedKey("minecraft-backpack", "backpack_id");
     private static final NamespacedKey BACKPACK_LEVEL_KEY = new NamespacedKey("minecraft-backpack", "backpack_level");
     private static final NamespacedKey INVENTORY_KEY = new NamespacedKey("minecraft-backpack", "inventory");
+    private static final NamespacedKey INVENTORY_REFS_KEY = new NamespacedKey("minecraft-backpack", "inventory_refs");
+
+    // Number of decoded pooled items kept around so common stacks are not decoded on every open
+    private static final int POOLED_ITEM_CACHE_SIZE = 4096;
+
+    private static final Map<String, ItemStack> POOLED_ITEM_CACHE =
+        new LinkedHashMap<String, ItemStack>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ItemStack> eldest) {
+                return size() > POOLED_ITEM_CACHE_SIZE;
+            }
+        };
+
+    private static ItemPool itemPool;
+    private static boolean deduplicateStorage;
+
+    // Backpacks already reported as oversized, so each is only logged once
+    private static final Set<String> REPORTED_OVERSIZED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Outcome of saving inventory contents into a backpack
+     */
+    public enum SaveResult {
+        SAVED,
+        OVER_BUDGET,
+        FAILED
+    }
 
     /**
      * Gets the appropriate chest material for a backpack level
@@ -131,6 +166,37 @@ public class BackpackItem {
         return container.get(BACKPACK_ID_KEY, PersistentDataType.STRING);
     }
 
+    /**
+     * Gets the unique ID of a backpack, assigning a new one if it has none
+     * @param backpack The backpack item
+     * @return The unique ID string, or null if not a backpack
+     */
+    public static String getOrAssignBackpackId(ItemStack backpack) {
+        String backpackId = getBackpackId(backpack);
+        if (backpackId != null || !isBackpack(backpack)) {
+            return backpackId;
+        }
+
+        return assignNewBackpackId(backpack);
+    }
+
+    /**
+     * Gives a backpack a fresh unique ID, separating it from any copies that shared its old one
+     * @param backpack The backpack item
+     * @return The new ID, or null if not a backpack
+     */
+    public static String assignNewBackpackId(ItemStack backpack) {
+        if (!isBackpack(backpack)) {
+            return null;
+        }
+
+        ItemMeta meta = backpack.getItemMeta();
+        String backpackId = UUID.randomUUID().toString();
+        meta.getPersistentDataContainer().set(BACKPACK_ID_KEY, PersistentDataType.STRING, backpackId);
+        backpack.setItemMeta(meta);
+        return backpackId;
+    }
+
     /**
      * Gets the level of a backpack
      * @param backpack The backpack item
@@ -189,19 +255,139 @@ public class BackpackItem {
         return getSlotsForLevel(level);
     }
 
+    /**
+     * Configures how backpack contents are stored
+     * @param pool The shared item pool, or null if none is loaded
+     * @param deduplicate true to store contents as references into the pool
+     */
+    public static void configureStorage(ItemPool pool, boolean deduplicate) {
+        itemPool = pool;
+        deduplicateStorage = deduplicate && pool != null;
+        synchronized (POOLED_ITEM_CACHE) {
+            POOLED_ITEM_CACHE.clear();
+        }
+    }
+
+    /**
+     * Checks whether new saves store references into the item pool
+     * @return true if deduplicated storage is active
+     */
+    public static boolean isDeduplicatedStorage() {
+        return deduplicateStorage;
+    }
+
+    /**
+     * Gets the size of the serialized inventory stored in a backpack
+     * @param backpack The backpack item
+     * @return Payload size in bytes, or 0 if the backpack has no stored inventory
+     */
+    public static int getPayloadSize(ItemStack backpack) {
+        byte[] inventoryData = getStoredPayload(backpack);
+        return inventoryData != null ? inventoryData.length : 0;
+    }
+
+    /**
+     * Gets the serialized inventory stored in a backpack, in whichever format it was saved
+     * @param backpack The backpack item
+     * @return The stored payload, or null if the backpack has no stored inventory
+     */
+    public static byte[] getStoredPayload(ItemStack backpack) {
+        if (!isBackpack(backpack)) {
+            return null;
+        }
+
+        PersistentDataContainer container = backpack.getItemMeta().getPersistentDataContainer();
+        byte[] inventoryData = container.get(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY);
+        if (inventoryData == null) {
+            inventoryData = container.get(INVENTORY_REFS_KEY, PersistentDataType.BYTE_ARRAY);
+        }
+        return inventoryData;
+    }
+
     /**
      * Saves inventory contents to a backpack item using serialization
      * @param backpack The backpack item
      * @param inventoryContents The inventory contents to save
+     * @return Whether the contents were saved, or why not
      */
-    public static void saveInventory(ItemStack backpack, ItemStack[] inventoryContents) {
+    public static SaveResult saveInventory(ItemStack backpack, ItemStack[] inventoryContents) {
         if (!isBackpack(backpack) || inventoryContents == null) {
-            return;
+            return SaveResult.FAILED;
+        }
+
+        String backpackId = getBackpackId(backpack);
+        boolean pooled = deduplicateStorage && backpackId != null;
+        BackpackMetrics.Operation operation = pooled
+            ? BackpackMetrics.Operation.SAVE_POOLED
+            : BackpackMetrics.Operation.SAVE;
+
+        long startNanos = System.nanoTime();
+        BackpackFlightEvents.Save flightEvent = new BackpackFlightEvents.Save();
+        flightEvent.begin();
+        int payloadBytes = 0;
+
+        try {
+            // Serialize the inventory contents to a byte array; pooled items are only encoded here,
+            // the pool itself is not touched until the payload is known to be stored
+            PooledPayload pooledPayload = pooled ? serializePooled(inventoryContents) : null;
+            byte[] inventoryData = pooled ? pooledPayload.table : serializeInline(inventoryContents);
+            payloadBytes = inventoryData.length;
+
+            // Refuse payloads that would make the item too large to store or send
+            if (!PayloadBudget.allows(payloadBytes)) {
+                BackpackMetrics.recordBudgetExceeded(BackpackMetrics.BudgetCheck.SAVE);
+                return SaveResult.OVER_BUDGET;
+            }
+
+            // Save to the backpack's persistent data
+            ItemMeta meta = backpack.getItemMeta();
+            if (meta != null) {
+                PersistentDataContainer container = meta.getPersistentDataContainer();
+                // Only one storage format is kept, so switching modes migrates the backpack
+                if (pooled) {
+                    // Entries must exist before anything references them
+                    for (int i = 0; i < pooledPayload.keys.length; i++) {
+                        itemPool.intern(pooledPayload.keys[i], pooledPayload.items[i]);
+                    }
+                    container.set(INVENTORY_REFS_KEY, PersistentDataType.BYTE_ARRAY, inventoryData);
+                    container.remove(INVENTORY_KEY);
+                } else {
+                    container.set(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY, inventoryData);
+                    // Pool references are left to the offline sweep; other copies of this
+                    // backpack, such as an upgrade preview's source, may still use them
+                    container.remove(INVENTORY_REFS_KEY);
+                }
+                backpack.setItemMeta(meta);
+
+                // Ownership follows the payload that was actually stored
+                if (pooled) {
+                    itemPool.setReferences(backpackId, pooledPayload.keys);
+                }
+            }
+
+            BackpackMetrics.recordSavedPayload(inventoryData.length);
+            return SaveResult.SAVED;
+
+        } catch (Exception e) {
+            // Log error but don't crash
+            System.err.println("Failed to save backpack inventory: " + e.getMessage());
+            BackpackMetrics.recordFailure(operation);
+            return SaveResult.FAILED;
+        } finally {
+            BackpackMetrics.recordLatency(operation, startNanos);
+            flightEvent.finish(backpack, payloadBytes);
         }
+    }
+
+    /**
+     * Serializes inventory contents into a self-contained payload
+     */
+    private static byte[] serializeInline(ItemStack[] inventoryContents) throws IOException {
+        // Reuse this thread's buffer, sized up front so writing never has to grow it
+        PayloadBuffers.PayloadBuffer outputStream =
+            PayloadBuffers.acquire(PayloadBudget.estimateInventoryBytesCached(inventoryContents));
 
         try {
-            // Serialize the inventory contents to a byte array
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
 
             // Write the length first
@@ -218,19 +404,62 @@ public class BackpackItem {
             }
 
             dataOutput.close();
-            byte[] inventoryData = outputStream.toByteArray();
+            return outputStream.toPayload();
+        } finally {
+            PayloadBuffers.release(outputStream);
+        }
+    }
 
-            // Save to the backpack's persistent data
-            ItemMeta meta = backpack.getItemMeta();
-            if (meta != null) {
-                PersistentDataContainer container = meta.getPersistentDataContainer();
-                container.set(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY, inventoryData);
-                backpack.setItemMeta(meta);
+    /**
+     * A slot-to-reference table together with the items it references, not yet interned
+     */
+    private static final class PooledPayload {
+        final byte[] table;
+        final String[] keys;
+        final byte[][] items;
+
+        PooledPayload(byte[] table, String[] keys, byte[][] items) {
+            this.table = table;
+            this.keys = keys;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Serializes inventory contents into a slot-to-reference table without touching the pool
+     */
+    private static PooledPayload serializePooled(ItemStack[] inventoryContents) throws IOException {
+        // The reference table has an exact worst-case size
+        PayloadBuffers.PayloadBuffer outputStream =
+            PayloadBuffers.acquire(4 + inventoryContents.length * (1 + ItemPool.HASH_LENGTH));
+        List<String> references = new ArrayList<>();
+        List<byte[]> items = new ArrayList<>();
+
+        try {
+            DataOutputStream dataOutput = new DataOutputStream(outputStream);
+
+            // Write the length first
+            dataOutput.writeInt(inventoryContents.length);
+
+            // Write a reference for each item
+            for (ItemStack item : inventoryContents) {
+                if (item != null && item.getType() != Material.AIR) {
+                    byte[] itemData = item.serializeAsBytes();
+                    byte[] hash = ItemPool.hash(itemData);
+                    dataOutput.writeBoolean(true); // has item
+                    dataOutput.write(hash);
+                    references.add(ItemPool.toKey(hash));
+                    items.add(itemData);
+                } else {
+                    dataOutput.writeBoolean(false); // empty slot
+                }
             }
 
-        } catch (Exception e) {
-            // Log error but don't crash
-            System.err.println("Failed to save backpack inventory: " + e.getMessage());
+            dataOutput.close();
+            return new PooledPayload(outputStream.toPayload(), references.toArray(new String[0]),
+                items.toArray(new byte[0][]));
+        } finally {
+            PayloadBuffers.release(outputStream);
         }
     }
 
@@ -254,43 +483,132 @@ public class BackpackItem {
 
         PersistentDataContainer container = meta.getPersistentDataContainer();
 
-        if (!container.has(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY)) {
+        boolean pooled = container.has(INVENTORY_REFS_KEY, PersistentDataType.BYTE_ARRAY);
+        if (!pooled && !container.has(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY)) {
             return contents;
         }
 
+        BackpackMetrics.Operation operation = pooled
+            ? BackpackMetrics.Operation.LOAD_POOLED
+            : BackpackMetrics.Operation.LOAD;
+
+        long startNanos = System.nanoTime();
+        BackpackFlightEvents.Load flightEvent = new BackpackFlightEvents.Load();
+        flightEvent.begin();
+        int payloadBytes = 0;
+
         try {
-            byte[] inventoryData = container.get(INVENTORY_KEY, PersistentDataType.BYTE_ARRAY);
+            byte[] inventoryData = container.get(pooled ? INVENTORY_REFS_KEY : INVENTORY_KEY,
+                PersistentDataType.BYTE_ARRAY);
             if (inventoryData == null || inventoryData.length == 0) {
                 return contents;
             }
 
-            // Deserialize the inventory contents
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(inventoryData);
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
+            payloadBytes = inventoryData.length;
+            BackpackMetrics.recordLoadedPayload(payloadBytes);
 
-            int length = dataInput.readInt();
-            int maxSlots = Math.min(length, contents.length);
-
-            for (int i = 0; i < maxSlots; i++) {
-                boolean hasItem = dataInput.readBoolean();
-                if (hasItem) {
-                    ItemStack item = (ItemStack) dataInput.readObject();
-                    contents[i] = item;
+            // Legacy backpacks may predate the budget; load them but make them visible
+            if (!PayloadBudget.allows(payloadBytes)) {
+                BackpackMetrics.recordBudgetExceeded(BackpackMetrics.BudgetCheck.LOAD);
+                String backpackId = getBackpackId(backpack);
+                if (REPORTED_OVERSIZED.add(String.valueOf(backpackId))) {
+                    System.err.println("Backpack " + backpackId + " holds a " + payloadBytes
+                        + " byte payload, over the budget of " + PayloadBudget.getMaxPayloadBytes() + " bytes");
                 }
-                // If no item, slot remains null (empty)
             }
 
-            dataInput.close();
+            // Deserialize the inventory contents
+            if (pooled) {
+                deserializePooled(inventoryData, contents);
+            } else {
+                deserializeInline(inventoryData, contents);
+            }
 
         } catch (Exception e) {
             // Log error but return empty inventory
             System.err.println("Failed to load backpack inventory: " + e.getMessage());
+            BackpackMetrics.recordFailure(operation);
             // Return empty contents array
+        } finally {
+            BackpackMetrics.recordLatency(operation, startNanos);
+            flightEvent.finish(backpack, payloadBytes);
         }
 
         return contents;
     }
 
+    /**
+     * Deserializes a self-contained payload into the given contents array
+     */
+    private static void deserializeInline(byte[] inventoryData, ItemStack[] contents)
+            throws IOException, ClassNotFoundException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(inventoryData);
+        BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
+
+        int length = dataInput.readInt();
+        int maxSlots = Math.min(length, contents.length);
+
+        for (int i = 0; i < maxSlots; i++) {
+            boolean hasItem = dataInput.readBoolean();
+            if (hasItem) {
+                ItemStack item = (ItemStack) dataInput.readObject();
+                contents[i] = item;
+            }
+            // If no item, slot remains null (empty)
+        }
+
+        dataInput.close();
+    }
+
+    /**
+     * Resolves a slot-to-reference table against the item pool into the given contents array
+     */
+    private static void deserializePooled(byte[] inventoryData, ItemStack[] contents) throws IOException {
+        if (itemPool == null) {
+            throw new IOException("backpack uses pooled storage but no item pool is loaded");
+        }
+
+        DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(inventoryData));
+        byte[] hash = new byte[ItemPool.HASH_LENGTH];
+
+        int length = dataInput.readInt();
+        int maxSlots = Math.min(length, contents.length);
+
+        for (int i = 0; i < maxSlots; i++) {
+            boolean hasItem = dataInput.readBoolean();
+            if (hasItem) {
+                dataInput.readFully(hash);
+                contents[i] = getPooledItem(ItemPool.toKey(hash));
+            }
+            // If no item, slot remains null (empty)
+        }
+    }
+
+    /**
+     * Gets a copy of a pooled item, decoding it only if it is not cached yet
+     */
+    private static ItemStack getPooledItem(String key) {
+        synchronized (POOLED_ITEM_CACHE) {
+            ItemStack cached = POOLED_ITEM_CACHE.get(key);
+            if (cached != null) {
+                return cached.clone();
+            }
+        }
+
+        byte[] data = itemPool.get(key);
+        if (data == null) {
+            // Leave the slot empty rather than losing the rest of the backpack
+            System.err.println("Backpack references missing pooled item " + key);
+            return null;
+        }
+
+        ItemStack item = ItemStack.deserializeBytes(data);
+        synchronized (POOLED_ITEM_CACHE) {
+            POOLED_ITEM_CACHE.put(key, item);
+        }
+        return item.clone();
+    }
+
     /**
      * Upgrades a backpack to the next level while preserving contents
      * @param backpack The backpack to upgrade
@@ -308,6 +626,9 @@ public class BackpackItem {
 
         int newLevel = currentLevel + 1;
 
+        BackpackFlightEvents.Upgrade flightEvent = new BackpackFlightEvents.Upgrade();
+        flightEvent.begin();
+
         // Load current contents
         ItemStack[] currentContents = loadInventory(backpack);
 
@@ -342,6 +663,7 @@ public class BackpackItem {
             // Save the contents (they will be truncated or expanded as needed)
             saveInventory(backpack, currentContents);
 
+            flightEvent.finish(backpack, -1);
             return true;
         }
 
@@ -6,6 +6,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
+import org.bukkit.event.inventory.ClickType;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.PrepareItemCraftEvent;
@@ -15,7 +16,9 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,7 +28,8 @@ import java.util.UUID;
 public class BackpackListener implements Listener {
 
     private final MinecraftBackpackPlugin plugin;
-    private final Map<UUID, ItemStack> openBackpacks = new HashMap<>();
+    private final Map<String, BackpackSession> sessions = new HashMap<>();
+    private final Map<UUID, BackpackSession> openSessions = new HashMap<>();
 
     public BackpackListener(MinecraftBackpackPlugin plugin) {
         this.plugin = plugin;
@@ -49,20 +53,55 @@ public class BackpackListener implements Listener {
         // Cancel the event to prevent normal item usage
         event.setCancelled(true);
 
-        // Load backpack contents
-        ItemStack[] contents = BackpackItem.loadInventory(itemInHand);
-        int backpackSlots = BackpackItem.getBackpackSlots(itemInHand);
+        long startNanos = System.nanoTime();
+        BackpackFlightEvents.Open flightEvent = new BackpackFlightEvents.Open();
+        flightEvent.begin();
 
-        // Create and open the backpack inventory with the correct size
-        Inventory backpackInventory = Bukkit.createInventory(player, backpackSlots, "Backpack");
-        backpackInventory.setContents(contents);
+        // Attach to the live inventory if someone already has this backpack open
+        String backpackId = BackpackItem.getOrAssignBackpackId(itemInHand);
+        BackpackSession session = sessions.get(backpackId);
 
-        // Track which backpack is being opened
-        openBackpacks.put(player.getUniqueId(), itemInHand.clone());
+        if (session != null && !session.isStoredIn(itemInHand)) {
+            // A different copy sharing the ID; opening it separately keeps both copies' contents
+            plugin.getLogger().warning(player.getName() + " opened a copy of backpack " + backpackId
+                + " that is already open elsewhere, giving it a new ID");
+            backpackId = BackpackItem.assignNewBackpackId(itemInHand);
+            session = null;
+        }
+
+        boolean createdSession = false;
+        if (session == null) {
+            // Load backpack contents
+            ItemStack[] contents = BackpackItem.loadInventory(itemInHand);
+            int backpackSlots = BackpackItem.getBackpackSlots(itemInHand);
+
+            // Create the backpack inventory with the correct size
+            Inventory backpackInventory = Bukkit.createInventory(player, backpackSlots, "Backpack");
+            backpackInventory.setContents(contents);
+
+            session = new BackpackSession(backpackId, itemInHand.clone(), backpackInventory);
+            sessions.put(backpackId, session);
+            createdSession = true;
+        }
 
-        player.openInventory(backpackInventory);
+        // Track which backpack is being viewed
+        session.addViewer(player.getUniqueId());
+        openSessions.put(player.getUniqueId(), session);
+
+        if (player.openInventory(session.getInventory()) == null) {
+            // Another plugin cancelled the open, so the player never became a viewer
+            openSessions.remove(player.getUniqueId());
+            // A session kept alive after a failed save still holds the only copy of its contents
+            if (session.removeViewer(player.getUniqueId()) && createdSession) {
+                sessions.remove(backpackId);
+            }
+            flightEvent.finish(itemInHand, -1);
+            return;
+        }
 
-        plugin.getLogger().info(player.getName() + " opened their backpack!");
+        BackpackMetrics.recordLatency(BackpackMetrics.Operation.OPEN, startNanos);
+        flightEvent.finish(itemInHand, -1);
+        plugin.getLogger().fine(player.getName() + " opened their backpack!");
     }
 
     @EventHandler
@@ -73,44 +112,150 @@ public class BackpackListener implements Listener {
         }
 
         Player player = (Player) event.getPlayer();
-        Inventory inventory = event.getInventory();
 
-        // Get the backpack that was opened
-        ItemStack openedBackpack = openBackpacks.remove(player.getUniqueId());
-        if (openedBackpack == null) {
+        // Get the backpack session the player was viewing
+        BackpackSession session = openSessions.remove(player.getUniqueId());
+        if (session == null) {
             return;
         }
 
-        // Find the backpack item in the player's current inventory and update it
+        long startNanos = System.nanoTime();
+        BackpackFlightEvents.Close flightEvent = new BackpackFlightEvents.Close();
+        flightEvent.begin();
+
+        boolean lastViewer = session.removeViewer(player.getUniqueId());
+        BackpackItem.SaveResult result;
+
+        if (lastViewer) {
+            // Save once, into whichever participant is holding the backpack now
+            result = saveToHolder(session, player);
+            if (result != BackpackItem.SaveResult.FAILED) {
+                sessions.remove(session.getBackpackId());
+            }
+        } else {
+            // Others keep viewing, but if the closing player holds the backpack they may
+            // walk away with it, so checkpoint the shared contents into their copy
+            result = saveToPlayer(session, player);
+        }
+
+        BackpackMetrics.recordLatency(BackpackMetrics.Operation.CLOSE, startNanos);
+        flightEvent.finish(session.getBackpack(),
+            result == BackpackItem.SaveResult.SAVED ? session.getStoredPayloadSize() : -1);
+
+        if (result == BackpackItem.SaveResult.FAILED) {
+            // The item still holds its previous contents, so handing the live contents back would
+            // duplicate them; the session stays alive so reopening the backpack shows them again
+            BackpackMetrics.recordFailure(BackpackMetrics.Operation.CLOSE);
+            player.sendMessage("§cYour backpack couldn't be saved - reopen it to get your items back.");
+            plugin.getLogger().warning("Failed to save backpack " + session.getBackpackId() + " closed by "
+                + player.getName() + ", keeping its contents open for the next attempt");
+        } else if (!lastViewer) {
+            plugin.getLogger().fine(player.getName() + " left a shared backpack still viewed by others");
+        } else if (result == BackpackItem.SaveResult.SAVED) {
+            plugin.getLogger().fine(player.getName() + " closed their backpack - items saved!");
+        } else {
+            BackpackMetrics.recordFailure(BackpackMetrics.Operation.CLOSE);
+            plugin.getLogger().warning(player.getName() + " closed backpack but couldn't find the item to save!");
+        }
+    }
+
+    /**
+     * Saves a session's contents into the backpack, looking at the closing player first
+     * and then at every other online participant
+     * @return The result of saving, or null if nobody holds the backpack
+     */
+    private BackpackItem.SaveResult saveToHolder(BackpackSession session, Player closingPlayer) {
+        BackpackItem.SaveResult result = saveToPlayer(session, closingPlayer);
+        if (result != null) {
+            return result;
+        }
+
+        for (UUID participantId : session.getParticipants()) {
+            Player participant = Bukkit.getPlayer(participantId);
+            if (participant != null && participant != closingPlayer) {
+                result = saveToPlayer(session, participant);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves a session's contents into the matching backpack in a player's inventory
+     * @return The result of saving, or null if the player doesn't hold the backpack
+     */
+    private BackpackItem.SaveResult saveToPlayer(BackpackSession session, Player player) {
         PlayerInventory playerInv = player.getInventory();
-        boolean foundAndUpdated = false;
 
         // Check main inventory
         for (int i = 0; i < playerInv.getSize(); i++) {
             ItemStack item = playerInv.getItem(i);
-            if (isSameBackpack(item, openedBackpack)) {
-                ItemStack[] contents = inventory.getContents();
-                BackpackItem.saveInventory(item, contents);
-                foundAndUpdated = true;
-                break;
+            if (session.isStoredIn(item)) {
+                return saveWithinBudget(session, item, player);
             }
         }
 
         // If not found in main inventory, check off-hand
-        if (!foundAndUpdated) {
-            ItemStack offHandItem = playerInv.getItemInOffHand();
-            if (isSameBackpack(offHandItem, openedBackpack)) {
-                ItemStack[] contents = inventory.getContents();
-                BackpackItem.saveInventory(offHandItem, contents);
-                foundAndUpdated = true;
+        ItemStack offHandItem = playerInv.getItemInOffHand();
+        if (session.isStoredIn(offHandItem)) {
+            return saveWithinBudget(session, offHandItem, player);
+        }
+        return null;
+    }
+
+    /**
+     * Saves a session's contents, handing items back to the player if they don't fit the payload budget
+     * Clicks are checked against an estimate, so this only trims when drags or other plugins overfill a backpack
+     * @return SAVED, or FAILED if the contents could not be stored (the item keeps its previous contents)
+     */
+    private BackpackItem.SaveResult saveWithinBudget(BackpackSession session, ItemStack backpack, Player player) {
+        ItemStack[] contents = session.getInventory().getContents();
+        List<ItemStack> overflow = new ArrayList<>();
+
+        BackpackItem.SaveResult result;
+        while ((result = BackpackItem.saveInventory(backpack, contents)) == BackpackItem.SaveResult.OVER_BUDGET) {
+            if (!removeLastItem(contents, overflow)) {
+                break;
             }
         }
 
-        if (foundAndUpdated) {
-            plugin.getLogger().info(player.getName() + " closed their backpack - items saved!");
-        } else {
-            plugin.getLogger().warning(player.getName() + " closed backpack but couldn't find the item to save!");
+        if (result != BackpackItem.SaveResult.SAVED) {
+            // Nothing was stored, so nothing is trimmed; the live inventory still holds every item
+            return BackpackItem.SaveResult.FAILED;
+        }
+        session.markSavedTo(backpack);
+
+        if (overflow.isEmpty()) {
+            return result;
+        }
+
+        session.getInventory().setContents(contents);
+        for (ItemStack leftover : player.getInventory().addItem(overflow.toArray(new ItemStack[0])).values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), leftover);
         }
+
+        player.sendMessage("§cYour backpack is too large to save - " + overflow.size()
+            + " item stacks were returned to you.");
+        plugin.getLogger().warning("Returned " + overflow.size() + " item stacks from backpack "
+            + session.getBackpackId() + " to " + player.getName() + " to stay within the payload budget");
+        return result;
+    }
+
+    /**
+     * Moves the last non-empty slot of a backpack into the overflow list
+     * @return false if the backpack is already empty
+     */
+    private boolean removeLastItem(ItemStack[] contents, List<ItemStack> overflow) {
+        for (int i = contents.length - 1; i >= 0; i--) {
+            if (contents[i] != null && contents[i].getType() != Material.AIR) {
+                overflow.add(contents[i]);
+                contents[i] = null;
+                return true;
+            }
+        }
+        return false;
     }
 
     @EventHandler
@@ -150,6 +295,10 @@ public class BackpackListener implements Listener {
 
             // Check if this upgrade can be applied to this backpack
             if (currentLevel >= 0 && upgradeLevel >= 1 && currentLevel == upgradeLevel - 1) {
+                long startNanos = System.nanoTime();
+                BackpackFlightEvents.UpgradePreview flightEvent = new BackpackFlightEvents.UpgradePreview();
+                flightEvent.begin();
+
                 // Valid upgrade combination - create the upgraded backpack
                 ItemStack upgradedBackpack = backpack.clone();
 
@@ -157,12 +306,20 @@ public class BackpackListener implements Listener {
                 ItemStack[] contents = BackpackItem.loadInventory(backpack);
 
                 // Apply the upgrade
-                if (BackpackItem.upgradeBackpack(upgradedBackpack)) {
+                boolean upgraded = BackpackItem.upgradeBackpack(upgradedBackpack);
+                if (upgraded) {
                     // Save the contents to the upgraded backpack
                     BackpackItem.saveInventory(upgradedBackpack, contents);
+                }
+
+                BackpackMetrics.recordLatency(BackpackMetrics.Operation.UPGRADE_PREVIEW, startNanos);
+                flightEvent.finish(upgraded ? upgradedBackpack : backpack, -1);
+
+                if (upgraded) {
                     inventory.setResult(upgradedBackpack);
                     return;
                 }
+                BackpackMetrics.recordFailure(BackpackMetrics.Operation.UPGRADE_PREVIEW);
             }
         }
 
@@ -179,6 +336,22 @@ public class BackpackListener implements Listener {
         }
 
         Player player = (Player) event.getWhoClicked();
+        BackpackFlightEvents.Click flightEvent = new BackpackFlightEvents.Click();
+        flightEvent.begin();
+
+        try {
+            handleBackpackClick(event);
+        } finally {
+            BackpackSession session = openSessions.get(player.getUniqueId());
+            flightEvent.finish(session != null ? session.getBackpack() : null, -1);
+        }
+    }
+
+    /**
+     * Prevents backpacks from being placed inside an open backpack inventory,
+     * and items from being added once the backpack would exceed its payload budget
+     */
+    private void handleBackpackClick(InventoryClickEvent event) {
         ItemStack cursorItem = event.getCursor();
         ItemStack currentItem = event.getCurrentItem();
         Inventory clickedInventory = event.getClickedInventory();
@@ -206,14 +379,34 @@ public class BackpackListener implements Listener {
             }
             // If clicked inventory is top inventory, allow moving backpack out (no cancellation needed)
         }
-    }
 
-    /**
-     * Checks if two backpack items are the same (by comparing their NBT data)
-     */
-    private boolean isSameBackpack(ItemStack item1, ItemStack item2) {
-        return BackpackItem.isBackpack(item1) &&
-               BackpackItem.isBackpack(item2) &&
-               item1.isSimilar(item2);
+        // Work out which item, if any, this click moves into the backpack
+        ItemStack incoming = null;
+        ItemStack outgoing = null;
+        if (clickedInventory != null && clickedInventory.equals(topInventory)) {
+            if (event.getClick() == ClickType.NUMBER_KEY) {
+                incoming = event.getWhoClicked().getInventory().getItem(event.getHotbarButton());
+                outgoing = currentItem;
+            } else if (event.getClick() == ClickType.SWAP_OFFHAND) {
+                incoming = event.getWhoClicked().getInventory().getItemInOffHand();
+                outgoing = currentItem;
+            } else if (!event.isShiftClick()) {
+                incoming = cursorItem;
+                outgoing = currentItem;
+            }
+        } else if (event.isShiftClick()) {
+            incoming = currentItem;
+        }
+
+        // Copying every slot is only worth it when something is actually moving in
+        if (!PayloadBudget.isEnabled() || incoming == null || incoming.getType() == Material.AIR) {
+            return;
+        }
+
+        if (!PayloadBudget.allowsInsert(topInventory.getContents(), incoming, outgoing)) {
+            BackpackMetrics.recordBudgetExceeded(BackpackMetrics.BudgetCheck.CLICK);
+            event.setCancelled(true);
+            event.getWhoClicked().sendMessage("§cThat won't fit - this backpack is at its size limit.");
+        }
     }
 }
@@ -0,0 +1,265 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Low-overhead operational metrics for backpack operations
+ * Counters and histograms are lock-free so they can be recorded on the hot path
+ */
+public class BackpackMetrics {
+
+    /**
+     * Backpack operations that are timed
+     */
+    public enum Operation {
+        OPEN("open"),
+        CLOSE("close"),
+        SAVE("save"),
+        LOAD("load"),
+        SAVE_POOLED("save_pooled"),
+        LOAD_POOLED("load_pooled"),
+        UPGRADE_PREVIEW("upgrade_preview");
+
+        private final String label;
+        private final MetricsHistogram latency = new MetricsHistogram(LATENCY_BOUNDS_MICROS);
+        private final LongAdder failures = new LongAdder();
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Places where a payload over the byte budget was detected
+     */
+    public enum BudgetCheck {
+        SAVE("save"),
+        CLICK("click"),
+        LOAD("load");
+
+        private final String label;
+        private final LongAdder exceeded = new LongAdder();
+
+        BudgetCheck(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Latency bucket upper bounds in microseconds
+    private static final long[] LATENCY_BOUNDS_MICROS = {
+        10, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 50_000
+    };
+
+    // Payload size bucket upper bounds in bytes
+    private static final long[] PAYLOAD_BOUNDS_BYTES = {
+        256, 1_024, 4_096, 16_384, 65_536, 262_144, 1_048_576
+    };
+
+    private static final MetricsHistogram SAVED_PAYLOAD_BYTES = new MetricsHistogram(PAYLOAD_BOUNDS_BYTES);
+    private static final MetricsHistogram LOADED_PAYLOAD_BYTES = new MetricsHistogram(PAYLOAD_BOUNDS_BYTES);
+
+    private static final Map<String, Gauge> GAUGES = new LinkedHashMap<>();
+
+    /**
+     * A value that is sampled whenever metrics are reported
+     */
+    private static class Gauge {
+        final String help;
+        final LongSupplier supplier;
+
+        Gauge(String help, LongSupplier supplier) {
+            this.help = help;
+            this.supplier = supplier;
+        }
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name
+     * @param name Metric name in Prometheus naming style
+     * @param help Short description of the value
+     * @param supplier Supplies the current value
+     */
+    public static void registerGauge(String name, String help, LongSupplier supplier) {
+        synchronized (GAUGES) {
+            GAUGES.put(name, new Gauge(help, supplier));
+        }
+    }
+
+    private static Map<String, Gauge> snapshotGauges() {
+        synchronized (GAUGES) {
+            return new LinkedHashMap<>(GAUGES);
+        }
+    }
+
+    /**
+     * Records the duration of an operation
+     * @param operation The operation that ran
+     * @param startNanos Value of System.nanoTime() taken when the operation started
+     */
+    public static void recordLatency(Operation operation, long startNanos) {
+        operation.latency.record((System.nanoTime() - startNanos) / 1_000);
+    }
+
+    /**
+     * Records a failed operation
+     * @param operation The operation that failed
+     */
+    public static void recordFailure(Operation operation) {
+        operation.failures.increment();
+    }
+
+    /**
+     * Records a payload that was over the byte budget
+     * @param check Where the oversized payload was detected
+     */
+    public static void recordBudgetExceeded(BudgetCheck check) {
+        check.exceeded.increment();
+    }
+
+    /**
+     * Records the size of a payload written by a save
+     * @param bytes Payload size in bytes
+     */
+    public static void recordSavedPayload(int bytes) {
+        SAVED_PAYLOAD_BYTES.record(bytes);
+    }
+
+    /**
+     * Records the size of a payload read by a load
+     * @param bytes Payload size in bytes
+     */
+    public static void recordLoadedPayload(int bytes) {
+        LOADED_PAYLOAD_BYTES.record(bytes);
+    }
+
+    /**
+     * Builds a human readable summary for the stats command
+     * @return Lines to show to the command sender
+     */
+    public static List<String> getSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add("§6Backpack stats §7(latency in us, p50/p99/max bucket)");
+
+        for (Operation operation : Operation.values()) {
+            MetricsHistogram latency = operation.latency;
+            long count = latency.getCount();
+            long average = count > 0 ? latency.getSum() / count : 0;
+
+            lines.add(String.format(Locale.ROOT, "§e%s§7: %d ops, avg %d, p50 %s, p99 %s, failures %d",
+                operation.getLabel(),
+                count,
+                average,
+                formatBound(latency.getQuantileUpperBound(0.50)),
+                formatBound(latency.getQuantileUpperBound(0.99)),
+                operation.failures.sum()));
+        }
+
+        lines.add(formatPayloadLine("saved bytes", SAVED_PAYLOAD_BYTES));
+        lines.add(formatPayloadLine("loaded bytes", LOADED_PAYLOAD_BYTES));
+        lines.add(String.format(Locale.ROOT, "§eover budget§7: %d rejected saves, %d rejected clicks, %d oversized loads",
+            BudgetCheck.SAVE.exceeded.sum(), BudgetCheck.CLICK.exceeded.sum(), BudgetCheck.LOAD.exceeded.sum()));
+
+        for (Map.Entry<String, Gauge> gauge : snapshotGauges().entrySet()) {
+            lines.add("§e" + gauge.getKey() + "§7: " + gauge.getValue().supplier.getAsLong());
+        }
+        return lines;
+    }
+
+    /**
+     * Writes all metrics to a file in the Prometheus text exposition format
+     * The file is written to a temporary sibling first and then moved into place
+     * @param target The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public static void writePrometheusFile(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# HELP intheback_operation_seconds Duration of backpack operations\n");
+            writer.write("# TYPE intheback_operation_seconds histogram\n");
+            for (Operation operation : Operation.values()) {
+                writeHistogram(writer, "intheback_operation_seconds", "op=\"" + operation.getLabel() + "\"",
+                    operation.latency, 1_000_000.0);
+            }
+
+            writer.write("# HELP intheback_operation_failures_total Failed backpack operations\n");
+            writer.write("# TYPE intheback_operation_failures_total counter\n");
+            for (Operation operation : Operation.values()) {
+                writer.write("intheback_operation_failures_total{op=\"" + operation.getLabel() + "\"} "
+                    + operation.failures.sum() + "\n");
+            }
+
+            writer.write("# HELP intheback_payload_bytes Size of serialized backpack payloads\n");
+            writer.write("# TYPE intheback_payload_bytes histogram\n");
+            writeHistogram(writer, "intheback_payload_bytes", "direction=\"save\"", SAVED_PAYLOAD_BYTES, 1.0);
+            writeHistogram(writer, "intheback_payload_bytes", "direction=\"load\"", LOADED_PAYLOAD_BYTES, 1.0);
+
+            writer.write("# HELP intheback_payload_budget_exceeded_total Payloads over the configured byte budget\n");
+            writer.write("# TYPE intheback_payload_budget_exceeded_total counter\n");
+            for (BudgetCheck check : BudgetCheck.values()) {
+                writer.write("intheback_payload_budget_exceeded_total{path=\"" + check.getLabel() + "\"} "
+                    + check.exceeded.sum() + "\n");
+            }
+
+            for (Map.Entry<String, Gauge> gauge : snapshotGauges().entrySet()) {
+                writer.write("# HELP " + gauge.getKey() + " " + gauge.getValue().help + "\n");
+                writer.write("# TYPE " + gauge.getKey() + " gauge\n");
+                writer.write(gauge.getKey() + " " + gauge.getValue().supplier.getAsLong() + "\n");
+            }
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHistogram(Writer writer, String name, String labels,
+                                       MetricsHistogram histogram, double divisor) throws IOException {
+        long[] bounds = histogram.getUpperBounds();
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            writer.write(name + "_bucket{" + labels + ",le=\"" + formatNumber(bounds[i] / divisor) + "\"} "
+                + cumulative + "\n");
+        }
+        cumulative += counts[bounds.length];
+        writer.write(name + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative + "\n");
+        writer.write(name + "_sum{" + labels + "} " + formatNumber(histogram.getSum() / divisor) + "\n");
+        writer.write(name + "_count{" + labels + "} " + cumulative + "\n");
+    }
+
+    private static String formatPayloadLine(String label, MetricsHistogram histogram) {
+        long count = histogram.getCount();
+        long average = count > 0 ? histogram.getSum() / count : 0;
+        return String.format(Locale.ROOT, "§e%s§7: %d payloads, avg %d, p99 %s, total %d",
+            label, count, average, formatBound(histogram.getQuantileUpperBound(0.99)), histogram.getSum());
+    }
+
+    private static String formatBound(long bound) {
+        return bound < 0 ? "overflow" : "<=" + bound;
+    }
+
+    private static String formatNumber(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
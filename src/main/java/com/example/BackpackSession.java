@@ -0,0 +1,112 @@
+package com.example;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A live backpack inventory shared by every player viewing the same backpack ID
+ * The contents are decoded once when the first viewer opens it and saved once
+ * when the last viewer closes it
+ *
+ * Copies of a backpack can share an ID (creative copies, duplication glitches),
+ * so the session also remembers the payload it was loaded from or last saved,
+ * and only items still holding that payload belong to it
+ */
+public class BackpackSession {
+
+    private final String backpackId;
+    private final ItemStack backpack;
+    private final Inventory inventory;
+    private final Set<UUID> viewers = new HashSet<>();
+    private final Set<UUID> participants = new HashSet<>();
+    private byte[] storedPayload;
+
+    /**
+     * Creates a session for a backpack
+     * @param backpackId The backpack ID
+     * @param backpack A copy of the backpack item as it was when the session started
+     * @param inventory The live inventory all viewers share
+     */
+    public BackpackSession(String backpackId, ItemStack backpack, Inventory inventory) {
+        this.backpackId = backpackId;
+        this.backpack = backpack;
+        this.inventory = inventory;
+        this.storedPayload = BackpackItem.getStoredPayload(backpack);
+    }
+
+    public String getBackpackId() {
+        return backpackId;
+    }
+
+    /**
+     * Gets the backpack item as it was when the session started
+     * @return Backpack item snapshot
+     */
+    public ItemStack getBackpack() {
+        return backpack;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Checks whether an item is this session's backpack rather than another copy sharing its ID
+     * @param item The item to check
+     * @return true if the item has this backpack's ID, size and last known payload
+     */
+    public boolean isStoredIn(ItemStack item) {
+        return backpackId.equals(BackpackItem.getBackpackId(item))
+            && BackpackItem.getBackpackSlots(item) == inventory.getSize()
+            && Arrays.equals(storedPayload, BackpackItem.getStoredPayload(item));
+    }
+
+    /**
+     * Gets the size of the payload the session was loaded from or last saved
+     * @return Payload size in bytes
+     */
+    public int getStoredPayloadSize() {
+        return storedPayload != null ? storedPayload.length : 0;
+    }
+
+    /**
+     * Records the payload the session's contents were just saved as
+     * @param backpack The backpack item that was saved
+     */
+    public void markSavedTo(ItemStack backpack) {
+        storedPayload = BackpackItem.getStoredPayload(backpack);
+    }
+
+    /**
+     * Attaches a viewer to the session
+     * @param playerId The viewer's UUID
+     */
+    public void addViewer(UUID playerId) {
+        viewers.add(playerId);
+        participants.add(playerId);
+    }
+
+    /**
+     * Detaches a viewer from the session
+     * @param playerId The viewer's UUID
+     * @return true if no viewers are left
+     */
+    public boolean removeViewer(UUID playerId) {
+        viewers.remove(playerId);
+        return viewers.isEmpty();
+    }
+
+    /**
+     * Gets every player that has viewed this session, including ones that already left
+     * These are the players that may be holding the backpack item when it needs saving
+     * @return Participant UUIDs
+     */
+    public Set<UUID> getParticipants() {
+        return participants;
+    }
+}
@@ -0,0 +1,636 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed pool of serialized items shared by all deduplicated backpacks
+ * Each distinct serialized item is stored once, keyed by its SHA-256 hash
+ *
+ * References are counted per backpack ID for statistics, but entries are never
+ * removed while the pool is in use: backpack items reach disk on the world's
+ * schedule, not ours, so an entry that looks unreferenced here may still be
+ * referenced by an item in a saved chunk. Unreferenced entries are reclaimed
+ * offline by the audit tool's mark-and-sweep.
+ *
+ * New entries are appended to a journal next to the pool file before they are
+ * handed out, so an item can never be written to disk referencing an entry
+ * that would be missing after a crash. Saving the pool writes a full snapshot
+ * and starts a fresh journal.
+ *
+ * This class has no Bukkit dependencies so the offline tools can use it too.
+ */
+public class ItemPool {
+
+    public static final int HASH_LENGTH = 32;
+
+    private static final int FILE_MAGIC = 0x49544250; // "ITBP"
+    private static final int FILE_VERSION = 1;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, String[]> owners = new HashMap<>();
+    private final Object saveLock = new Object();
+    private long storedBytes;
+    // Kept as running totals so the metrics gauges never scan the pool
+    private long referencedBytes;
+    private int unreferencedEntries;
+    // Set by entry changes only; owner records are statistics and are written with the next snapshot
+    private boolean dirty;
+    private Path journalFile;
+    private DataOutputStream journal;
+    // Bytes of complete records in the live journal; anything after this is a torn write
+    private long journalLength;
+
+    /**
+     * A single pooled item
+     */
+    private static class Entry {
+        final String hash;
+        final byte[] data;
+        int references;
+
+        Entry(String hash, byte[] data) {
+            this.hash = hash;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Hashes serialized item data
+     * @param data The serialized item
+     * @return Raw SHA-256 hash
+     */
+    public static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Converts a raw hash to the key used by the pool
+     * @param hash Raw hash bytes
+     * @return Hex encoded key
+     */
+    public static String toKey(byte[] hash) {
+        return HEX.formatHex(hash);
+    }
+
+    /**
+     * Converts a pool key back to raw hash bytes
+     * @param key Hex encoded key
+     * @return Raw hash bytes
+     */
+    public static byte[] fromKey(String key) {
+        return HEX.parseHex(key);
+    }
+
+    private static Path getJournalFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    private static Path getRotatedJournalFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal.old");
+    }
+
+    /**
+     * Starts journaling new entries next to the pool file
+     * Call this after load() so the journal continues where the loaded state ends
+     * @param file The pool file
+     * @throws IOException If the journal cannot be opened
+     */
+    public synchronized void openJournal(Path file) throws IOException {
+        // Cut off torn records left by a crash so new records are not appended behind them
+        truncate(getRotatedJournalFile(file), replayJournal(getRotatedJournalFile(file)));
+        journalFile = getJournalFile(file);
+        journalLength = replayJournal(journalFile);
+        reopenJournal();
+    }
+
+    /**
+     * Opens the live journal for appending, dropping anything after the last complete record
+     */
+    private void reopenJournal() throws IOException {
+        truncate(journalFile, journalLength);
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                channel.truncate(length);
+            }
+        }
+    }
+
+    private void closeJournalQuietly() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+            // The stream is abandoned either way; reopening truncates whatever it left behind
+        }
+        journal = null;
+    }
+
+    /**
+     * Stops journaling; call after the final save
+     * @throws IOException If the journal cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        journalFile = null;
+        if (journal != null) {
+            DataOutputStream stream = journal;
+            journal = null;
+            stream.close();
+        }
+    }
+
+    /**
+     * Adds serialized item data to the pool if it is not already present
+     * New entries are journaled before this returns
+     * The entry is not referenced until it is passed to setReferences
+     * @param data The serialized item
+     * @return The key of the pooled entry
+     * @throws UncheckedIOException If the entry cannot be journaled
+     */
+    public String intern(byte[] data) {
+        String key = toKey(hash(data));
+        intern(key, data);
+        return key;
+    }
+
+    /**
+     * Adds serialized item data whose key the caller has already computed
+     * @param key The key of the data, as returned by toKey(hash(data))
+     * @param data The serialized item
+     * @throws UncheckedIOException If the entry cannot be journaled
+     */
+    public synchronized void intern(String key, byte[] data) {
+        if (!entries.containsKey(key)) {
+            byte[] hash = fromKey(key);
+            if (journalFile != null) {
+                try {
+                    // A failed write or rotation leaves the journal closed until it can be reopened
+                    if (journal == null) {
+                        reopenJournal();
+                    }
+                    writeEntry(journal, hash, data);
+                    journal.flush();
+                    journalLength += HASH_LENGTH + 4 + data.length;
+                } catch (IOException e) {
+                    closeJournalQuietly();
+                    throw new UncheckedIOException("Failed to journal pool entry", e);
+                }
+            }
+            addEntry(key, data);
+            dirty = true;
+        }
+    }
+
+    private void addEntry(String key, byte[] data) {
+        if (entries.putIfAbsent(key, new Entry(key, data)) == null) {
+            storedBytes += data.length;
+            unreferencedEntries++;
+        }
+    }
+
+    private void retain(Entry entry) {
+        if (entry.references++ == 0) {
+            unreferencedEntries--;
+        }
+        referencedBytes += entry.data.length;
+    }
+
+    private static void writeEntry(DataOutputStream out, byte[] hash, byte[] data) throws IOException {
+        out.write(hash);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Gets the serialized data of a pooled item
+     * @param key The entry key
+     * @return Serialized item data, or null if the entry does not exist
+     */
+    public synchronized byte[] get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.data : null;
+    }
+
+    /**
+     * Replaces the set of entries referenced by a backpack
+     * Entries that end up unreferenced are kept until the offline sweep
+     * @param backpackId The backpack ID
+     * @param keys Keys of all entries the backpack now references (duplicates allowed)
+     */
+    public synchronized void setReferences(String backpackId, String[] keys) {
+        String[] canonical = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Entry entry = entries.get(keys[i]);
+            if (entry == null) {
+                throw new IllegalArgumentException("Unknown pool entry " + keys[i]);
+            }
+            // Share the entry's key instance to keep the owner table small
+            canonical[i] = entry.hash;
+        }
+
+        // Retain the new references before releasing the old ones so shared entries survive
+        for (String key : canonical) {
+            retain(entries.get(key));
+        }
+
+        String[] previous = canonical.length > 0 ? owners.put(backpackId, canonical) : owners.remove(backpackId);
+        if (previous != null) {
+            for (String key : previous) {
+                release(key);
+            }
+        }
+    }
+
+    private void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        referencedBytes -= entry.data.length;
+        if (--entry.references == 0) {
+            unreferencedEntries++;
+        }
+    }
+
+    /**
+     * Removes a backpack's references, for example when it is known to be destroyed
+     * @param backpackId The backpack ID
+     */
+    public void removeOwner(String backpackId) {
+        setReferences(backpackId, new String[0]);
+    }
+
+    /**
+     * Removes every entry outside the given set; only safe offline, once every
+     * stored backpack has been scanned for the entries it references
+     * Owner records naming a removed entry are stale and are dropped as well
+     * @param liveKeys Keys referenced by at least one stored backpack
+     * @return Number of entries removed
+     */
+    public synchronized int retainOnly(Set<String> liveKeys) {
+        List<String> staleOwners = new ArrayList<>();
+        for (Map.Entry<String, String[]> owner : owners.entrySet()) {
+            for (String key : owner.getValue()) {
+                if (!liveKeys.contains(key)) {
+                    staleOwners.add(owner.getKey());
+                    break;
+                }
+            }
+        }
+        for (String owner : staleOwners) {
+            removeOwner(owner);
+        }
+
+        int removed = 0;
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (!liveKeys.contains(entry.hash)) {
+                iterator.remove();
+                storedBytes -= entry.data.length;
+                referencedBytes -= (long) entry.data.length * entry.references;
+                if (entry.references == 0) {
+                    unreferencedEntries--;
+                }
+                removed++;
+            }
+        }
+
+        if (removed > 0 || !staleOwners.isEmpty()) {
+            dirty = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the keys of every pooled item
+     * @return Snapshot of entry keys
+     */
+    public synchronized List<String> getEntryKeys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Gets the IDs of all backpacks that reference the pool
+     * @return Snapshot of owner IDs
+     */
+    public synchronized List<String> getOwners() {
+        return new ArrayList<>(owners.keySet());
+    }
+
+    /**
+     * Gets the number of distinct pooled items
+     * @return Entry count
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of backpacks referencing the pool
+     * @return Owner count
+     */
+    public synchronized int getOwnerCount() {
+        return owners.size();
+    }
+
+    /**
+     * Gets the total size of all pooled item data
+     * @return Size in bytes
+     */
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Gets the number of entries no known backpack references
+     * These are candidates for the offline sweep, not guaranteed garbage
+     * @return Unreferenced entry count
+     */
+    public synchronized int getUnreferencedEntryCount() {
+        return unreferencedEntries;
+    }
+
+    /**
+     * Gets the size all referenced items would take if each reference stored its own copy
+     * @return Size in bytes
+     */
+    public synchronized long getReferencedBytes() {
+        return referencedBytes;
+    }
+
+    /**
+     * Checks whether entries were added or removed since the pool was last loaded or saved
+     * Owner changes alone don't count; they are only written along with entry changes
+     * @return true if there are unsaved entry changes
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Loads a pool from disk, replacing the current contents
+     * Entries from journals written since the last snapshot are replayed on top,
+     * and reference counts are rebuilt from the owner table
+     * @param file The pool file
+     * @throws IOException If the file cannot be read or is corrupt
+     */
+    public synchronized void load(Path file) throws IOException {
+        entries.clear();
+        owners.clear();
+        storedBytes = 0;
+        referencedBytes = 0;
+        unreferencedEntries = 0;
+        dirty = false;
+
+        if (Files.exists(file)) {
+            readSnapshot(file);
+        }
+
+        replayJournal(getRotatedJournalFile(file));
+        replayJournal(getJournalFile(file));
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        // No count or length in a valid file can exceed the file's own size
+        long fileSize = Files.size(file);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not an item pool file: " + file);
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported item pool version " + version);
+            }
+
+            int entryCount = checkCount(in.readInt(), fileSize, "entry count");
+            String[] keysByIndex = new String[entryCount];
+            byte[] hash = new byte[HASH_LENGTH];
+            for (int i = 0; i < entryCount; i++) {
+                in.readFully(hash);
+                byte[] data = new byte[checkCount(in.readInt(), fileSize, "entry length")];
+                in.readFully(data);
+                if (!Arrays.equals(hash, hash(data))) {
+                    throw new IOException("Item pool entry " + i + " does not match its hash");
+                }
+
+                String key = toKey(hash);
+                addEntry(key, data);
+                keysByIndex[i] = key;
+            }
+
+            int ownerCount = checkCount(in.readInt(), fileSize, "owner count");
+            for (int i = 0; i < ownerCount; i++) {
+                String backpackId = in.readUTF();
+                String[] keys = new String[checkCount(in.readInt(), fileSize, "reference count")];
+                for (int j = 0; j < keys.length; j++) {
+                    int index = in.readInt();
+                    if (index < 0 || index >= entryCount) {
+                        throw new IOException("Backpack " + backpackId + " references missing pool entry " + index);
+                    }
+                    keys[j] = keysByIndex[index];
+                }
+
+                // Count references only once the whole record is known to be valid
+                for (String key : keys) {
+                    retain(entries.get(key));
+                }
+                String[] previous = owners.put(backpackId, keys);
+                if (previous != null) {
+                    for (String key : previous) {
+                        release(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int checkCount(int value, long limit, String name) throws IOException {
+        if (value < 0 || value > limit) {
+            throw new IOException("Corrupt item pool: invalid " + name + " " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Adds every complete record of a journal to the pool
+     * @return Length of the complete records, where a torn tail (if any) begins
+     */
+    private long replayJournal(Path journalFile) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return 0;
+        }
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            byte[] hash = new byte[HASH_LENGTH];
+            while (true) {
+                byte[] data;
+                try {
+                    in.readFully(hash);
+                    int length = in.readInt();
+                    if (length < 0 || length > in.available()) {
+                        // A record cut short by a crash; everything before it is intact
+                        return validLength;
+                    }
+                    data = new byte[length];
+                    in.readFully(data);
+                } catch (EOFException e) {
+                    return validLength;
+                }
+
+                if (!Arrays.equals(hash, hash(data))) {
+                    // A torn write at the tail of the journal
+                    return validLength;
+                }
+                validLength += HASH_LENGTH + 4 + data.length;
+
+                String key = toKey(hash);
+                if (!entries.containsKey(key)) {
+                    addEntry(key, data);
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves a snapshot of the pool to disk atomically
+     * The journal is rotated with the snapshot and only discarded once the snapshot is in place
+     * @param file The pool file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        // Concurrent saves would share the temporary and rotated journal files
+        synchronized (saveLock) {
+            writeSnapshot(file);
+        }
+    }
+
+    private void writeSnapshot(Path file) throws IOException {
+        List<Entry> entrySnapshot;
+        Map<String, String[]> ownerSnapshot;
+        Path rotatedJournal = getRotatedJournalFile(file);
+
+        // Snapshot under the lock, write without it
+        synchronized (this) {
+            entrySnapshot = new ArrayList<>(entries.values());
+            ownerSnapshot = new HashMap<>(owners);
+            dirty = false;
+
+            // Entries interned from here on go to a fresh journal the snapshot doesn't cover
+            if (journalFile != null) {
+                try {
+                    rotateJournal(rotatedJournal);
+                } catch (IOException e) {
+                    dirty = true;
+                    throw e;
+                }
+            }
+        }
+
+        Map<String, Integer> indexByKey = new HashMap<>();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+
+            out.writeInt(entrySnapshot.size());
+            for (int i = 0; i < entrySnapshot.size(); i++) {
+                Entry entry = entrySnapshot.get(i);
+                writeEntry(out, fromKey(entry.hash), entry.data);
+                indexByKey.put(entry.hash, i);
+            }
+
+            out.writeInt(ownerSnapshot.size());
+            for (Map.Entry<String, String[]> owner : ownerSnapshot.entrySet()) {
+                out.writeUTF(owner.getKey());
+                out.writeInt(owner.getValue().length);
+                for (String key : owner.getValue()) {
+                    out.writeInt(indexByKey.get(key));
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            throw e;
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Everything journaled so far is now in the snapshot
+        Files.deleteIfExists(rotatedJournal);
+        synchronized (this) {
+            if (journalFile == null) {
+                Files.deleteIfExists(getJournalFile(file));
+            }
+        }
+    }
+
+    /**
+     * Moves the live journal's records onto the rotated journal and starts an empty live journal
+     * A rotated journal left by a failed save holds entries no snapshot has yet, so it is appended to
+     */
+    private void rotateJournal(Path rotatedJournal) throws IOException {
+        closeJournalQuietly();
+        truncate(journalFile, journalLength);
+
+        if (Files.exists(journalFile)) {
+            if (Files.exists(rotatedJournal)) {
+                long rotatedLength = Files.size(rotatedJournal);
+                try (OutputStream out = Files.newOutputStream(rotatedJournal, StandardOpenOption.APPEND)) {
+                    Files.copy(journalFile, out);
+                } catch (IOException e) {
+                    // Don't leave half a record behind the ones already there
+                    truncate(rotatedJournal, rotatedLength);
+                    throw e;
+                }
+                Files.delete(journalFile);
+            } else {
+                Files.move(journalFile, rotatedJournal);
+            }
+        }
+
+        journalLength = 0;
+        reopenJournal();
+    }
+}
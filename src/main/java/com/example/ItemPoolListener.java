@@ -0,0 +1,35 @@
+package com.example;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldSaveEvent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the item pool snapshot in step with world saves
+ * New entries are already journaled; the snapshot only compacts the journal and
+ * records backpack ownership, so it is written asynchronously
+ */
+public class ItemPoolListener implements Listener {
+
+    private final MinecraftBackpackPlugin plugin;
+    private final ItemPool pool;
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+
+    public ItemPoolListener(MinecraftBackpackPlugin plugin, ItemPool pool) {
+        this.plugin = plugin;
+        this.pool = pool;
+    }
+
+    @EventHandler
+    public void onWorldSave(WorldSaveEvent event) {
+        // Fires once per world; one queued snapshot covers them all
+        if (pool.isDirty() && saveQueued.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                saveQueued.set(false);
+                plugin.saveItemPool();
+            });
+        }
+    }
+}
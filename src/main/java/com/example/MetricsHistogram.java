@@ -0,0 +1,104 @@
+package com.example;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket histogram backed by striped counters
+ * Recording never locks, so it is safe to call from the main thread on every event
+ */
+public class MetricsHistogram {
+
+    private final long[] upperBounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Creates a histogram with the given inclusive bucket upper bounds
+     * An extra overflow bucket is always added for values above the last bound
+     * @param upperBounds Ascending bucket upper bounds
+     */
+    public MetricsHistogram(long... upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        this.buckets = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single observation
+     * @param value The observed value
+     */
+    public void record(long value) {
+        int index = 0;
+        while (index < upperBounds.length && value > upperBounds[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Gets the bucket upper bounds (without the overflow bucket)
+     * @return Copy of the bucket upper bounds
+     */
+    public long[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * Gets a snapshot of the per-bucket counts, including the overflow bucket last
+     * @return Non-cumulative bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of recorded observations
+     * @return Observation count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of all recorded observations
+     * @return Observation sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Estimates a quantile from the bucket counts
+     * @param quantile The quantile between 0 and 1
+     * @return Upper bound of the bucket holding the quantile, or -1 if it falls in the overflow bucket
+     */
+    public long getQuantileUpperBound(double quantile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < upperBounds.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return upperBounds[i];
+            }
+        }
+        return -1;
+    }
+}
@@ -1,26 +1,59 @@
 package com.example;
 
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Minecraft Backpack Plugin - Main plugin class
  * A Paper plugin that adds backpack functionality to Minecraft
  */
 public class MinecraftBackpackPlugin extends JavaPlugin {
 
+    private ItemPool itemPool;
+
     @Override
     public void onEnable() {
         // Plugin startup logic
         getLogger().info("In The Back has been enabled!");
 
+        // Write the default config if none exists yet
+        saveDefaultConfig();
+
+        // Export the Flight Recorder settings so they can be passed to -XX:StartFlightRecording
+        if (!new File(getDataFolder(), "intheback.jfc").exists()) {
+            saveResource("intheback.jfc", false);
+        }
+
+        // Limit how large a single backpack payload may grow
+        PayloadBudget.configure(getConfig().getLong("limits.max-payload-bytes", 262144));
+
+        // Load the shared item pool before anything can open a backpack
+        if (!loadItemPool()) {
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
         // Register event listeners
         getServer().getPluginManager().registerEvents(new BackpackListener(this), this);
 
+        // Register commands
+        PluginCommand backpackCommand = getCommand("backpack");
+        if (backpackCommand != null) {
+            BackpackCommand executor = new BackpackCommand();
+            backpackCommand.setExecutor(executor);
+            backpackCommand.setTabCompleter(executor);
+        }
+
         // Register crafting recipes
         BackpackRecipe.registerRecipe();
         BackpackUpgrade.registerUpgradeRecipes();
 
         getLogger().info("Backpack and upgrade crafting recipes registered!");
+
+        startPrometheusExport();
     }
 
     @Override
@@ -29,7 +62,112 @@ public class MinecraftBackpackPlugin extends JavaPlugin {
         BackpackRecipe.unregisterRecipe();
         BackpackUpgrade.unregisterUpgradeRecipes();
 
+        saveItemPool();
+        closeItemPool();
+        BackpackItem.configureStorage(null, false);
+
         // Plugin shutdown logic
         getLogger().info("In The Back has been disabled!");
     }
+
+    /**
+     * Loads the item pool used by deduplicated storage
+     * The pool is loaded even in inline mode so backpacks saved while deduplication
+     * was enabled can still be opened
+     * @return false if the pool exists but could not be read
+     */
+    private boolean loadItemPool() {
+        String mode = getConfig().getString("storage.mode", "inline");
+        boolean deduplicate = "deduplicated".equalsIgnoreCase(mode);
+        if (!deduplicate && !"inline".equalsIgnoreCase(mode)) {
+            getLogger().warning("Unknown storage.mode '" + mode + "', using inline storage");
+        }
+
+        ItemPool pool = new ItemPool();
+        try {
+            pool.load(getPoolFile().toPath());
+            pool.openJournal(getPoolFile().toPath());
+        } catch (IOException e) {
+            // Carrying on would let backpacks overwrite references to items we could not read
+            getLogger().severe("Failed to load item pool, disabling to protect stored items: " + e.getMessage());
+            return false;
+        }
+
+        itemPool = pool;
+        BackpackItem.configureStorage(pool, deduplicate);
+
+        BackpackMetrics.registerGauge("intheback_pool_entries", "Distinct items in the item pool",
+            pool::getEntryCount);
+        BackpackMetrics.registerGauge("intheback_pool_owners", "Backpacks referencing the item pool",
+            pool::getOwnerCount);
+        BackpackMetrics.registerGauge("intheback_pool_stored_bytes", "Bytes stored in the item pool",
+            pool::getStoredBytes);
+        BackpackMetrics.registerGauge("intheback_pool_referenced_bytes",
+            "Bytes the pooled references would take if every item were stored in full",
+            pool::getReferencedBytes);
+        BackpackMetrics.registerGauge("intheback_pool_unreferenced_entries",
+            "Pooled items no known backpack references, reclaimable by the offline sweep",
+            pool::getUnreferencedEntryCount);
+
+        // Snapshot the pool alongside the world so the two stay close together on disk
+        getServer().getPluginManager().registerEvents(new ItemPoolListener(this, pool), this);
+
+        getLogger().info("Using " + (deduplicate ? "deduplicated" : "inline") + " backpack storage ("
+            + pool.getEntryCount() + " pooled items)");
+        return true;
+    }
+
+    /**
+     * Writes the item pool to disk if it has been loaded
+     */
+    void saveItemPool() {
+        if (itemPool == null) {
+            return;
+        }
+
+        try {
+            itemPool.save(getPoolFile().toPath());
+        } catch (IOException e) {
+            getLogger().warning("Failed to save item pool: " + e.getMessage());
+        }
+    }
+
+    private void closeItemPool() {
+        if (itemPool == null) {
+            return;
+        }
+
+        try {
+            itemPool.close();
+        } catch (IOException e) {
+            getLogger().warning("Failed to close item pool journal: " + e.getMessage());
+        }
+    }
+
+    private File getPoolFile() {
+        return new File(getDataFolder(), "item-pool.dat");
+    }
+
+    /**
+     * Schedules the periodic Prometheus metrics file export if it is enabled in the config
+     */
+    private void startPrometheusExport() {
+        if (!getConfig().getBoolean("metrics.prometheus-file.enabled", false)) {
+            return;
+        }
+
+        long intervalTicks = Math.max(1, getConfig().getLong("metrics.prometheus-file.interval-seconds", 30)) * 20L;
+        File metricsFile = new File(getDataFolder(), "metrics.prom");
+
+        // Writing the file is I/O, so keep it off the main thread
+        getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+            try {
+                BackpackMetrics.writePrometheusFile(metricsFile.toPath());
+            } catch (IOException e) {
+                getLogger().warning("Failed to write metrics file: " + e.getMessage());
+            }
+        }, intervalTicks, intervalTicks);
+
+        getLogger().info("Writing backpack metrics to " + metricsFile.getPath());
+    }
 }
@@ -0,0 +1,218 @@
+package com.example;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal reader and writer for Minecraft's NBT format, used by the offline tools
+ * Compounds are read as LinkedHashMaps and lists as NbtLists; every other tag maps
+ * to its natural Java type (Byte, Short, Integer, Long, Float, Double, byte[],
+ * String, int[] and long[])
+ *
+ * This class has no Bukkit dependencies so it can run without a server.
+ */
+public class NbtIo {
+
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_FLOAT = 5;
+    public static final byte TAG_DOUBLE = 6;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+
+    // Deeper nesting than this is not produced by the game and points at corrupt data
+    private static final int MAX_DEPTH = 512;
+
+    /**
+     * A list tag, which remembers its element type so empty lists round-trip
+     */
+    public static class NbtList extends ArrayList<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte elementType;
+
+        public NbtList(byte elementType) {
+            this.elementType = elementType;
+        }
+
+        public byte getElementType() {
+            return elementType;
+        }
+    }
+
+    /**
+     * Reads a named root compound
+     * @param in The input to read from
+     * @return The root compound (its name is discarded)
+     * @throws IOException If the data is not a valid compound
+     */
+    public static Map<String, Object> readRoot(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (type != TAG_COMPOUND) {
+            throw new IOException("Root tag is not a compound (type " + type + ")");
+        }
+        in.readUTF();
+        return readCompound(in, 0);
+    }
+
+    /**
+     * Writes a compound as an unnamed root
+     * @param out The output to write to
+     * @param root The root compound
+     * @throws IOException If writing fails
+     */
+    public static void writeRoot(DataOutput out, Map<String, Object> root) throws IOException {
+        out.writeByte(TAG_COMPOUND);
+        out.writeUTF("");
+        writePayload(out, root);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> asCompound(Object tag) {
+        return tag instanceof Map ? (Map<String, Object>) tag : null;
+    }
+
+    private static Map<String, Object> readCompound(DataInput in, int depth) throws IOException {
+        Map<String, Object> compound = new LinkedHashMap<>();
+        while (true) {
+            byte type = in.readByte();
+            if (type == TAG_END) {
+                return compound;
+            }
+            String name = in.readUTF();
+            compound.put(name, readPayload(in, type, depth + 1));
+        }
+    }
+
+    private static Object readPayload(DataInput in, byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+
+        switch (type) {
+            case TAG_BYTE: return in.readByte();
+            case TAG_SHORT: return in.readShort();
+            case TAG_INT: return in.readInt();
+            case TAG_LONG: return in.readLong();
+            case TAG_FLOAT: return in.readFloat();
+            case TAG_DOUBLE: return in.readDouble();
+            case TAG_BYTE_ARRAY: {
+                byte[] value = new byte[checkLength(in.readInt())];
+                in.readFully(value);
+                return value;
+            }
+            case TAG_STRING: return in.readUTF();
+            case TAG_LIST: {
+                byte elementType = in.readByte();
+                int length = checkLength(in.readInt());
+                NbtList list = new NbtList(elementType);
+                for (int i = 0; i < length; i++) {
+                    list.add(readPayload(in, elementType, depth + 1));
+                }
+                return list;
+            }
+            case TAG_COMPOUND: return readCompound(in, depth);
+            case TAG_INT_ARRAY: {
+                int[] value = new int[checkLength(in.readInt())];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = in.readInt();
+                }
+                return value;
+            }
+            case TAG_LONG_ARRAY: {
+                long[] value = new long[checkLength(in.readInt())];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = in.readLong();
+                }
+                return value;
+            }
+            default:
+                throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative NBT length " + length);
+        }
+        return length;
+    }
+
+    private static void writePayload(DataOutput out, Object value) throws IOException {
+        if (value instanceof Byte) {
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            out.writeInt(array.length);
+            out.write(array);
+        } else if (value instanceof String) {
+            out.writeUTF((String) value);
+        } else if (value instanceof NbtList) {
+            NbtList list = (NbtList) value;
+            out.writeByte(list.isEmpty() ? list.getElementType() : typeOf(list.get(0)));
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writePayload(out, element);
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<String, Object> entry : asCompound(value).entrySet()) {
+                out.writeByte(typeOf(entry.getValue()));
+                out.writeUTF(entry.getKey());
+                writePayload(out, entry.getValue());
+            }
+            out.writeByte(TAG_END);
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            out.writeInt(array.length);
+            for (int element : array) {
+                out.writeInt(element);
+            }
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            out.writeInt(array.length);
+            for (long element : array) {
+                out.writeLong(element);
+            }
+        } else {
+            throw new IOException("Cannot write " + value.getClass().getName() + " as NBT");
+        }
+    }
+
+    private static byte typeOf(Object value) throws IOException {
+        if (value instanceof Byte) return TAG_BYTE;
+        if (value instanceof Short) return TAG_SHORT;
+        if (value instanceof Integer) return TAG_INT;
+        if (value instanceof Long) return TAG_LONG;
+        if (value instanceof Float) return TAG_FLOAT;
+        if (value instanceof Double) return TAG_DOUBLE;
+        if (value instanceof byte[]) return TAG_BYTE_ARRAY;
+        if (value instanceof String) return TAG_STRING;
+        if (value instanceof NbtList) return TAG_LIST;
+        if (value instanceof Map) return TAG_COMPOUND;
+        if (value instanceof int[]) return TAG_INT_ARRAY;
+        if (value instanceof long[]) return TAG_LONG_ARRAY;
+        throw new IOException("Cannot write " + value.getClass().getName() + " as NBT");
+    }
+}
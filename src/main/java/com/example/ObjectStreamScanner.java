@@ -0,0 +1,363 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a Java serialization stream without loading any of its classes
+ *
+ * Follows the stream grammar closely enough to know where every object ends, so
+ * a payload can be checked for truncation, stray bytes and broken framing
+ * without a server to deserialize the items in it.
+ *
+ * This class has no Bukkit dependencies so it can run without a server.
+ */
+public class ObjectStreamScanner {
+
+    private static final short STREAM_MAGIC = (short) 0xACED;
+    private static final short STREAM_VERSION = 5;
+    private static final int BASE_WIRE_HANDLE = 0x7E0000;
+
+    private static final int TC_NULL = 0x70;
+    private static final int TC_REFERENCE = 0x71;
+    private static final int TC_CLASSDESC = 0x72;
+    private static final int TC_OBJECT = 0x73;
+    private static final int TC_STRING = 0x74;
+    private static final int TC_ARRAY = 0x75;
+    private static final int TC_CLASS = 0x76;
+    private static final int TC_BLOCKDATA = 0x77;
+    private static final int TC_ENDBLOCKDATA = 0x78;
+    private static final int TC_RESET = 0x79;
+    private static final int TC_BLOCKDATALONG = 0x7A;
+    private static final int TC_EXCEPTION = 0x7B;
+    private static final int TC_LONGSTRING = 0x7C;
+    private static final int TC_PROXYCLASSDESC = 0x7D;
+    private static final int TC_ENUM = 0x7E;
+
+    private static final int SC_WRITE_METHOD = 0x01;
+    private static final int SC_SERIALIZABLE = 0x02;
+    private static final int SC_EXTERNALIZABLE = 0x04;
+    private static final int SC_BLOCK_DATA = 0x08;
+
+    // Deeper nesting than any item could produce is treated as corruption
+    private static final int MAX_DEPTH = 512;
+
+    private final ByteArrayInputStream bytes;
+    private final DataInputStream in;
+    private final List<Object> handles = new ArrayList<>();
+    private int blockRemaining;
+
+    /**
+     * A class description, kept so objects referring to it by handle can be walked
+     */
+    private static class ClassDesc {
+        final String name;
+        int flags;
+        char[] fieldTypes = new char[0];
+        ClassDesc superDesc;
+
+        ClassDesc(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Starts walking a stream
+     * @param data The serialized stream
+     * @throws IOException If the data does not start with a serialization stream header
+     */
+    public ObjectStreamScanner(byte[] data) throws IOException {
+        bytes = new ByteArrayInputStream(data);
+        in = new DataInputStream(bytes);
+        if (in.readShort() != STREAM_MAGIC || in.readShort() != STREAM_VERSION) {
+            throw new StreamCorruptedException("not a serialized object stream");
+        }
+    }
+
+    /**
+     * Reads an int written with ObjectOutputStream#writeInt
+     * @return The value
+     * @throws IOException If the stream holds no primitive data here
+     */
+    public int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readUnsignedByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a byte written with ObjectOutputStream#writeByte or #writeBoolean
+     * @return The value
+     * @throws IOException If the stream holds no primitive data here
+     */
+    public int readUnsignedByte() throws IOException {
+        // Primitive writes are buffered into blocks, and a value may be split across two
+        while (blockRemaining == 0) {
+            int type = in.readUnsignedByte();
+            if (type == TC_BLOCKDATA) {
+                blockRemaining = in.readUnsignedByte();
+            } else if (type == TC_BLOCKDATALONG) {
+                blockRemaining = checkLength(in.readInt());
+            } else {
+                throw new StreamCorruptedException("expected primitive data, found type code 0x"
+                    + Integer.toHexString(type));
+            }
+        }
+        blockRemaining--;
+        return in.readUnsignedByte();
+    }
+
+    /**
+     * Skips an object written with ObjectOutputStream#writeObject
+     * @throws IOException If the stream holds no complete object here
+     */
+    public void skipObject() throws IOException {
+        if (blockRemaining > 0) {
+            throw new StreamCorruptedException("expected an object, found " + blockRemaining
+                + " bytes of primitive data");
+        }
+        skipContent(in.readUnsignedByte(), 0);
+    }
+
+    /**
+     * Checks that everything in the stream has been read
+     * @return true if no data is left
+     */
+    public boolean isAtEnd() {
+        return blockRemaining == 0 && bytes.available() == 0;
+    }
+
+    private void skipContent(int type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new StreamCorruptedException("objects nested too deeply");
+        }
+
+        switch (type) {
+            case TC_NULL:
+                return;
+            case TC_REFERENCE:
+                getHandle(in.readInt());
+                return;
+            case TC_OBJECT: {
+                ClassDesc desc = readClassDesc(in.readUnsignedByte(), depth);
+                if (desc == null) {
+                    throw new StreamCorruptedException("object without a class");
+                }
+                handles.add(null);
+                skipClassData(desc, depth);
+                return;
+            }
+            case TC_STRING:
+                handles.add(null);
+                skip(in.readUnsignedShort());
+                return;
+            case TC_LONGSTRING: {
+                handles.add(null);
+                long length = in.readLong();
+                if (length < 0 || length > bytes.available()) {
+                    throw new EOFException();
+                }
+                skip((int) length);
+                return;
+            }
+            case TC_ARRAY:
+                skipArray(depth);
+                return;
+            case TC_ENUM:
+                readClassDesc(in.readUnsignedByte(), depth);
+                handles.add(null);
+                skipContent(in.readUnsignedByte(), depth + 1);
+                return;
+            case TC_CLASS:
+                readClassDesc(in.readUnsignedByte(), depth);
+                handles.add(null);
+                return;
+            case TC_CLASSDESC:
+            case TC_PROXYCLASSDESC:
+                readClassDesc(type, depth);
+                return;
+            case TC_RESET:
+                handles.clear();
+                skipContent(in.readUnsignedByte(), depth);
+                return;
+            case TC_EXCEPTION:
+                throw new StreamCorruptedException("stream records a write failure");
+            default:
+                throw new StreamCorruptedException("unexpected type code 0x" + Integer.toHexString(type));
+        }
+    }
+
+    private ClassDesc readClassDesc(int type, int depth) throws IOException {
+        switch (type) {
+            case TC_NULL:
+                return null;
+            case TC_REFERENCE: {
+                Object handle = getHandle(in.readInt());
+                if (!(handle instanceof ClassDesc)) {
+                    throw new StreamCorruptedException("reference to a non-class where a class was expected");
+                }
+                return (ClassDesc) handle;
+            }
+            case TC_CLASSDESC: {
+                ClassDesc desc = new ClassDesc(in.readUTF());
+                in.readLong(); // serialVersionUID
+                handles.add(desc);
+                desc.flags = in.readUnsignedByte();
+
+                int fieldCount = in.readShort();
+                if (fieldCount < 0) {
+                    throw new StreamCorruptedException("negative field count");
+                }
+                desc.fieldTypes = new char[fieldCount];
+                for (int i = 0; i < fieldCount; i++) {
+                    char fieldType = (char) in.readUnsignedByte();
+                    in.readUTF(); // field name
+                    if (fieldType == 'L' || fieldType == '[') {
+                        skipContent(in.readUnsignedByte(), depth + 1); // field class name
+                    } else if (primitiveSize(fieldType) == 0) {
+                        throw new StreamCorruptedException("invalid field type '" + fieldType + "'");
+                    }
+                    desc.fieldTypes[i] = fieldType;
+                }
+
+                skipAnnotation(depth);
+                desc.superDesc = readClassDesc(in.readUnsignedByte(), depth + 1);
+                return desc;
+            }
+            case TC_PROXYCLASSDESC: {
+                ClassDesc desc = new ClassDesc("proxy");
+                desc.flags = SC_SERIALIZABLE;
+                handles.add(desc);
+                int interfaceCount = checkLength(in.readInt());
+                for (int i = 0; i < interfaceCount; i++) {
+                    in.readUTF();
+                }
+                skipAnnotation(depth);
+                desc.superDesc = readClassDesc(in.readUnsignedByte(), depth + 1);
+                return desc;
+            }
+            default:
+                throw new StreamCorruptedException("expected a class, found type code 0x" + Integer.toHexString(type));
+        }
+    }
+
+    private void skipClassData(ClassDesc desc, int depth) throws IOException {
+        // Data is written from the topmost serializable superclass down
+        List<ClassDesc> hierarchy = new ArrayList<>();
+        for (ClassDesc current = desc; current != null; current = current.superDesc) {
+            if (hierarchy.size() > MAX_DEPTH) {
+                throw new StreamCorruptedException("class hierarchy too deep");
+            }
+            hierarchy.add(0, current);
+        }
+
+        for (ClassDesc current : hierarchy) {
+            if ((current.flags & SC_EXTERNALIZABLE) != 0) {
+                if ((current.flags & SC_BLOCK_DATA) == 0) {
+                    // Old-protocol externalizable data has no framing to follow
+                    throw new StreamCorruptedException("unsupported externalizable class " + current.name);
+                }
+                skipAnnotation(depth);
+            } else if ((current.flags & SC_SERIALIZABLE) != 0) {
+                for (char fieldType : current.fieldTypes) {
+                    if (fieldType == 'L' || fieldType == '[') {
+                        skipContent(in.readUnsignedByte(), depth + 1);
+                    } else {
+                        skip(primitiveSize(fieldType));
+                    }
+                }
+                if ((current.flags & SC_WRITE_METHOD) != 0) {
+                    skipAnnotation(depth);
+                }
+            }
+        }
+    }
+
+    private void skipArray(int depth) throws IOException {
+        ClassDesc desc = readClassDesc(in.readUnsignedByte(), depth);
+        if (desc == null || desc.name.length() < 2 || desc.name.charAt(0) != '[') {
+            throw new StreamCorruptedException("array without an array class");
+        }
+        handles.add(null);
+
+        int length = checkLength(in.readInt());
+        char elementType = desc.name.charAt(1);
+        if (elementType == 'L' || elementType == '[') {
+            for (int i = 0; i < length; i++) {
+                skipContent(in.readUnsignedByte(), depth + 1);
+            }
+        } else {
+            int elementSize = primitiveSize(elementType);
+            if (elementSize == 0) {
+                throw new StreamCorruptedException("invalid array class " + desc.name);
+            }
+            skip((long) length * elementSize);
+        }
+    }
+
+    /**
+     * Skips the data and objects a custom writeObject or writeExternal wrote, up to its end marker
+     */
+    private void skipAnnotation(int depth) throws IOException {
+        while (true) {
+            int type = in.readUnsignedByte();
+            if (type == TC_ENDBLOCKDATA) {
+                return;
+            } else if (type == TC_BLOCKDATA) {
+                skip(in.readUnsignedByte());
+            } else if (type == TC_BLOCKDATALONG) {
+                skip(checkLength(in.readInt()));
+            } else {
+                skipContent(type, depth + 1);
+            }
+        }
+    }
+
+    private Object getHandle(int handle) throws IOException {
+        int index = handle - BASE_WIRE_HANDLE;
+        if (index < 0 || index >= handles.size()) {
+            throw new StreamCorruptedException("invalid handle 0x" + Integer.toHexString(handle));
+        }
+        return handles.get(index);
+    }
+
+    private void skip(long length) throws IOException {
+        if (length > bytes.available()) {
+            throw new EOFException();
+        }
+        in.skipNBytes(length);
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0) {
+            throw new StreamCorruptedException("negative length " + length);
+        }
+        return length;
+    }
+
+    private static int primitiveSize(char type) {
+        switch (type) {
+            case 'B':
+            case 'Z':
+                return 1;
+            case 'C':
+            case 'S':
+                return 2;
+            case 'I':
+            case 'F':
+                return 4;
+            case 'J':
+            case 'D':
+                return 8;
+            default:
+                return 0;
+        }
+    }
+}
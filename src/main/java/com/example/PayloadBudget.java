@@ -0,0 +1,176 @@
+package com.example;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Byte budget for backpack payloads, protecting chunk, player file and packet size limits
+ * Provides a cheap size estimate so clicks can be checked without encoding the whole backpack
+ */
+public class PayloadBudget {
+
+    // Rough serialized size of an item that has not been measured yet, and of the payload header
+    static final int PLAIN_ITEM_ESTIMATE = 200;
+    static final int HEADER_ESTIMATE = 64;
+
+    // Java serialization stream header, written once per payload rather than per item
+    private static final int STREAM_HEADER_BYTES = 4;
+
+    // Number of measured item sizes kept so repeated clicks on the same items don't re-measure
+    private static final int SIZE_CACHE_SIZE = 2048;
+
+    // Keyed by item equality; distinct items can share a hash code, so the code alone is not enough
+    private static final Map<ItemStack, Integer> SIZE_CACHE =
+        new LinkedHashMap<ItemStack, Integer>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ItemStack, Integer> eldest) {
+                return size() > SIZE_CACHE_SIZE;
+            }
+        };
+
+    private static long maxPayloadBytes;
+
+    /**
+     * Sets the payload budget
+     * @param maxBytes Largest allowed payload in bytes, or 0 to disable the budget
+     */
+    public static void configure(long maxBytes) {
+        maxPayloadBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Checks whether a budget is being enforced
+     * @return true if payloads are limited
+     */
+    public static boolean isEnabled() {
+        return maxPayloadBytes > 0;
+    }
+
+    public static long getMaxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    /**
+     * Checks a payload size against the budget
+     * @param bytes Payload size in bytes
+     * @return true if the payload is allowed
+     */
+    public static boolean allows(long bytes) {
+        return !isEnabled() || bytes <= maxPayloadBytes;
+    }
+
+    /**
+     * Estimates the payload size of a whole backpack
+     * Pooled backpacks only store fixed-size references, so only inline storage is estimated
+     * @param contents The backpack contents
+     * @return Estimated payload size in bytes
+     */
+    public static long estimateInventoryBytes(ItemStack[] contents) {
+        return estimateInventoryBytes(contents, true);
+    }
+
+    /**
+     * Estimates the payload size of a whole backpack without measuring any uncached item
+     * Meant for sizing encode buffers, where measuring would cost as much as the encode itself
+     * @param contents The backpack contents
+     * @return Estimated payload size in bytes
+     */
+    public static long estimateInventoryBytesCached(ItemStack[] contents) {
+        return estimateInventoryBytes(contents, false);
+    }
+
+    private static long estimateInventoryBytes(ItemStack[] contents, boolean measure) {
+        long total = HEADER_ESTIMATE;
+        for (ItemStack item : contents) {
+            total += estimateItemBytes(item, measure);
+        }
+        return total;
+    }
+
+    /**
+     * Estimates the number of bytes an item adds to a backpack payload
+     * Items with metadata are measured once with the payload encoder and cached; plain items use a constant
+     * @param item The item
+     * @return Estimated size in bytes
+     */
+    public static int estimateItemBytes(ItemStack item) {
+        return estimateItemBytes(item, true);
+    }
+
+    private static int estimateItemBytes(ItemStack item, boolean measure) {
+        if (item == null || item.getType() == Material.AIR) {
+            return 1;
+        }
+        if (BackpackItem.isDeduplicatedStorage()) {
+            return 1 + ItemPool.HASH_LENGTH;
+        }
+        if (!item.hasItemMeta()) {
+            return PLAIN_ITEM_ESTIMATE;
+        }
+
+        synchronized (SIZE_CACHE) {
+            Integer cached = SIZE_CACHE.get(item);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (!measure) {
+            return PLAIN_ITEM_ESTIMATE;
+        }
+
+        int size;
+        try {
+            size = measureItemBytes(item);
+        } catch (IOException e) {
+            // Unencodable items fail the real save too; don't let the estimate hide that
+            return Integer.MAX_VALUE / 2;
+        }
+        synchronized (SIZE_CACHE) {
+            // Stored as a copy so later changes to the live stack cannot corrupt the key
+            SIZE_CACHE.put(item.clone(), size);
+        }
+        return size;
+    }
+
+    /**
+     * Encodes a single slot exactly as an inline payload does
+     * The item is measured on its own, so class descriptors a full payload would share are
+     * counted for every item and the estimate errs high. ItemStack#serializeAsBytes is not
+     * used because it is compressed, which hides how large text-heavy items are inline
+     */
+    private static int measureItemBytes(ItemStack item) throws IOException {
+        PayloadBuffers.PayloadBuffer outputStream = PayloadBuffers.acquire(0);
+        try {
+            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
+            dataOutput.writeBoolean(true);
+            dataOutput.writeObject(item);
+            dataOutput.close();
+            return outputStream.size() - STREAM_HEADER_BYTES;
+        } finally {
+            PayloadBuffers.release(outputStream);
+        }
+    }
+
+    /**
+     * Checks whether a backpack would stay within budget after an item moves in
+     * @param contents Current backpack contents
+     * @param incoming The item being added
+     * @param outgoing The item it replaces, or null
+     * @return true if the estimated result is allowed
+     */
+    public static boolean allowsInsert(ItemStack[] contents, ItemStack incoming, ItemStack outgoing) {
+        if (!isEnabled() || incoming == null || incoming.getType() == Material.AIR) {
+            return true;
+        }
+
+        long estimate = estimateInventoryBytes(contents)
+            - estimateItemBytes(outgoing)
+            + estimateItemBytes(incoming);
+        return allows(estimate);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reader and writer for Anvil region files (.mca), used by the offline tools
+ * A region holds up to 32x32 chunks, each stored as compressed NBT in 4 KiB sectors
+ *
+ * This class has no Bukkit dependencies so it can run without a server.
+ */
+public class RegionFile {
+
+    public static final int CHUNK_COUNT = 1024;
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SECTORS = 2;
+
+    private static final byte COMPRESSION_GZIP = 1;
+    private static final byte COMPRESSION_ZLIB = 2;
+    private static final byte COMPRESSION_NONE = 3;
+    private static final int COMPRESSION_EXTERNAL_FLAG = 0x80;
+
+    private final Path file;
+    private final int[] timestamps = new int[CHUNK_COUNT];
+    private final byte[] compressionTypes = new byte[CHUNK_COUNT];
+    private final byte[][] rawChunks = new byte[CHUNK_COUNT][];
+    private final boolean[] external = new boolean[CHUNK_COUNT];
+
+    private RegionFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads every chunk of a region file into memory, still compressed
+     * @param file The region file
+     * @return The loaded region
+     * @throws IOException If the file cannot be read or its header is corrupt
+     */
+    public static RegionFile read(Path file) throws IOException {
+        RegionFile region = new RegionFile(file);
+        byte[] data = Files.readAllBytes(file);
+        if (data.length == 0) {
+            return region;
+        }
+        if (data.length < HEADER_SECTORS * SECTOR_SIZE) {
+            throw new IOException("Truncated region header");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            int location = buffer.getInt(i * 4);
+            region.timestamps[i] = buffer.getInt(SECTOR_SIZE + i * 4);
+            if (location == 0) {
+                continue;
+            }
+
+            int offset = (location >>> 8) * SECTOR_SIZE;
+            if (offset < HEADER_SECTORS * SECTOR_SIZE || offset + 5 > data.length) {
+                throw new IOException("Chunk " + i + " points outside the file");
+            }
+
+            int length = buffer.getInt(offset);
+            if (length < 1 || offset + 4 + length > data.length) {
+                throw new IOException("Chunk " + i + " has an invalid length");
+            }
+
+            byte compression = data[offset + 4];
+            region.external[i] = (compression & COMPRESSION_EXTERNAL_FLAG) != 0;
+            region.compressionTypes[i] = (byte) (compression & ~COMPRESSION_EXTERNAL_FLAG);
+
+            byte[] raw = new byte[length - 1];
+            System.arraycopy(data, offset + 5, raw, 0, raw.length);
+            region.rawChunks[i] = raw;
+        }
+        return region;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether a chunk slot holds data stored inside this file
+     * Oversized chunks stored in external .mcc files are reported as absent
+     * @param index Chunk index (x + z * 32 within the region)
+     * @return true if the chunk can be read
+     */
+    public boolean hasChunk(int index) {
+        return rawChunks[index] != null && !external[index];
+    }
+
+    /**
+     * Checks whether a chunk slot points at an external .mcc file
+     * @param index Chunk index
+     * @return true if the chunk is stored externally
+     */
+    public boolean isExternal(int index) {
+        return rawChunks[index] != null && external[index];
+    }
+
+    /**
+     * Decompresses a chunk
+     * @param index Chunk index
+     * @return Uncompressed NBT data
+     * @throws IOException If the chunk uses an unsupported compression or is corrupt
+     */
+    public byte[] readChunk(int index) throws IOException {
+        byte[] raw = rawChunks[index];
+        switch (compressionTypes[index]) {
+            case COMPRESSION_GZIP:
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                    return in.readAllBytes();
+                }
+            case COMPRESSION_ZLIB:
+                try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(raw))) {
+                    return in.readAllBytes();
+                }
+            case COMPRESSION_NONE:
+                return raw;
+            default:
+                throw new IOException("Unsupported chunk compression " + compressionTypes[index]);
+        }
+    }
+
+    /**
+     * Replaces a chunk's data, compressing it with zlib
+     * @param index Chunk index
+     * @param nbt Uncompressed NBT data
+     * @throws IOException If compression fails
+     */
+    public void writeChunk(int index, byte[] nbt) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(nbt.length / 4 + 64);
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(nbt);
+        }
+        rawChunks[index] = compressed.toByteArray();
+        compressionTypes[index] = COMPRESSION_ZLIB;
+        external[index] = false;
+    }
+
+    /**
+     * Writes the region back to its file atomically, packing chunks into fresh sectors
+     * @throws IOException If the file cannot be written
+     */
+    public void save() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        out.write(header.array());
+
+        int sector = HEADER_SECTORS;
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            header.putInt(SECTOR_SIZE + i * 4, timestamps[i]);
+            byte[] raw = rawChunks[i];
+            if (raw == null) {
+                continue;
+            }
+
+            int length = raw.length + 1;
+            int sectors = (4 + length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            if (sectors > 255) {
+                throw new IOException("Chunk " + i + " is too large to store inline");
+            }
+
+            ByteBuffer chunkHeader = ByteBuffer.allocate(5);
+            chunkHeader.putInt(length);
+            chunkHeader.put((byte) (compressionTypes[i] | (external[i] ? COMPRESSION_EXTERNAL_FLAG : 0)));
+            out.write(chunkHeader.array());
+            out.write(raw);
+            out.write(new byte[sectors * SECTOR_SIZE - 4 - length]);
+
+            header.putInt(i * 4, (sector << 8) | sectors);
+            sector += sectors;
+        }
+
+        byte[] data = out.toByteArray();
+        System.arraycopy(header.array(), 0, data, 0, header.capacity());
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
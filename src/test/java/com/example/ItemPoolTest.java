@@ -0,0 +1,263 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemPoolTest {
+
+    private static final byte[] SWORD = "diamond sword".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TORCH = "torch x64".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void internDeduplicatesIdenticalItems() {
+        ItemPool pool = new ItemPool();
+        String first = pool.intern(SWORD);
+        String second = pool.intern(SWORD.clone());
+
+        assertEquals(first, second);
+        assertEquals(1, pool.getEntryCount());
+        assertEquals(SWORD.length, pool.getStoredBytes());
+        assertArrayEquals(SWORD, pool.get(first));
+    }
+
+    @Test
+    void referencesAreCountedPerBackpack() throws IOException {
+        ItemPool pool = new ItemPool();
+        String sword = pool.intern(SWORD);
+        String torch = pool.intern(TORCH);
+
+        pool.save(directory.resolve("item-pool.dat"));
+        pool.setReferences("a", new String[] {sword, sword, torch});
+        pool.setReferences("b", new String[] {sword});
+        assertEquals(2, pool.getOwnerCount());
+        // Ownership is statistics only and must not force a snapshot on its own
+        assertFalse(pool.isDirty());
+        assertEquals(3L * SWORD.length + TORCH.length, pool.getReferencedBytes());
+        assertEquals(0, pool.getUnreferencedEntryCount());
+
+        // Replacing a backpack's references releases only what it no longer holds
+        pool.setReferences("a", new String[] {sword});
+        assertEquals(2L * SWORD.length, pool.getReferencedBytes());
+        assertEquals(1, pool.getUnreferencedEntryCount());
+
+        pool.removeOwner("b");
+        assertEquals(1, pool.getOwnerCount());
+        assertEquals(SWORD.length, pool.getReferencedBytes());
+    }
+
+    @Test
+    void unreferencedEntriesAreKeptUntilSwept() {
+        ItemPool pool = new ItemPool();
+        String sword = pool.intern(SWORD);
+        String torch = pool.intern(TORCH);
+        pool.setReferences("a", new String[] {sword, torch});
+        pool.setReferences("b", new String[] {torch});
+
+        pool.removeOwner("a");
+        assertEquals(2, pool.getEntryCount());
+        assertArrayEquals(SWORD, pool.get(sword));
+
+        // The sweep drops unmarked entries and any owner record that still names one
+        pool.setReferences("c", new String[] {sword});
+        assertEquals(1, pool.retainOnly(Set.of(torch)));
+        assertNull(pool.get(sword));
+        assertEquals(TORCH.length, pool.getStoredBytes());
+        assertEquals(1, pool.getOwnerCount());
+        assertEquals(TORCH.length, pool.getReferencedBytes());
+    }
+
+    @Test
+    void rejectsReferencesToUnknownEntries() {
+        ItemPool pool = new ItemPool();
+        String missing = ItemPool.toKey(ItemPool.hash(SWORD));
+
+        assertThrows(IllegalArgumentException.class, () -> pool.setReferences("a", new String[] {missing}));
+        assertEquals(0, pool.getOwnerCount());
+    }
+
+    @Test
+    void saveAndLoadRoundTrip() throws IOException {
+        Path file = directory.resolve("item-pool.dat");
+        ItemPool pool = new ItemPool();
+        String sword = pool.intern(SWORD);
+        String torch = pool.intern(TORCH);
+        pool.setReferences("a", new String[] {sword, torch});
+        pool.setReferences("b", new String[] {sword});
+        pool.save(file);
+        assertFalse(pool.isDirty());
+
+        ItemPool loaded = new ItemPool();
+        loaded.load(file);
+        assertEquals(2, loaded.getEntryCount());
+        assertEquals(2, loaded.getOwnerCount());
+        assertEquals(pool.getStoredBytes(), loaded.getStoredBytes());
+        assertEquals(pool.getReferencedBytes(), loaded.getReferencedBytes());
+        assertArrayEquals(TORCH, loaded.get(torch));
+        assertFalse(loaded.isDirty());
+    }
+
+    @Test
+    void journalRestoresEntriesInternedSinceTheLastSave() throws IOException {
+        Path file = directory.resolve("item-pool.dat");
+        ItemPool pool = new ItemPool();
+        pool.load(file);
+        pool.openJournal(file);
+        String sword = pool.intern(SWORD);
+        pool.save(file);
+        String torch = pool.intern(TORCH);
+        pool.close();
+
+        // Simulate a crash part way through the next journal record
+        Files.write(directory.resolve("item-pool.dat.journal"), new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        assertFalse(Files.exists(directory.resolve("item-pool.dat.journal.old")));
+
+        ItemPool loaded = new ItemPool();
+        loaded.load(file);
+        assertArrayEquals(SWORD, loaded.get(sword));
+        assertArrayEquals(TORCH, loaded.get(torch));
+        assertEquals(2, loaded.getEntryCount());
+    }
+
+    @Test
+    void savingWithoutJournalRemovesStaleJournals() throws IOException {
+        Path file = directory.resolve("item-pool.dat");
+        ItemPool pool = new ItemPool();
+        pool.openJournal(file);
+        pool.intern(SWORD);
+        pool.close();
+
+        ItemPool offline = new ItemPool();
+        offline.load(file);
+        offline.save(file);
+        assertFalse(Files.exists(directory.resolve("item-pool.dat.journal")));
+
+        ItemPool loaded = new ItemPool();
+        loaded.load(file);
+        assertEquals(1, loaded.getEntryCount());
+    }
+
+    @Test
+    void failedSavesKeepEveryJournaledEntry() throws IOException {
+        Path file = directory.resolve("item-pool.dat");
+        ItemPool pool = new ItemPool();
+        pool.openJournal(file);
+        String sword = pool.intern(SWORD);
+        pool.save(file);
+
+        // Block the temporary snapshot file so the next saves fail after rotating the journal
+        Path blocker = Files.createDirectories(directory.resolve("item-pool.dat.tmp").resolve("blocker"));
+        String torch = pool.intern(TORCH);
+        assertThrows(IOException.class, () -> pool.save(file));
+        assertTrue(pool.isDirty());
+        byte[] shield = "shield".getBytes(StandardCharsets.UTF_8);
+        String shieldKey = pool.intern(shield);
+        assertThrows(IOException.class, () -> pool.save(file));
+
+        // Crash without a successful save
+        pool.close();
+        Files.delete(blocker);
+
+        ItemPool loaded = new ItemPool();
+        loaded.load(file);
+        assertArrayEquals(SWORD, loaded.get(sword));
+        assertArrayEquals(TORCH, loaded.get(torch));
+        assertArrayEquals(shield, loaded.get(shieldKey));
+    }
+
+    @Test
+    void reopenedJournalDropsTornTail() throws IOException {
+        Path file = directory.resolve("item-pool.dat");
+        Path journal = directory.resolve("item-pool.dat.journal");
+        ItemPool pool = new ItemPool();
+        pool.openJournal(file);
+        String sword = pool.intern(SWORD);
+        pool.close();
+        Files.write(journal, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Records written after restarting must not end up behind the torn one
+        ItemPool restarted = new ItemPool();
+        restarted.load(file);
+        restarted.openJournal(file);
+        String torch = restarted.intern(TORCH);
+        restarted.close();
+
+        ItemPool loaded = new ItemPool();
+        loaded.load(file);
+        assertArrayEquals(SWORD, loaded.get(sword));
+        assertArrayEquals(TORCH, loaded.get(torch));
+    }
+
+    private Path writePoolFile(int ownerIndex) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x49544250);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.write(ItemPool.hash(SWORD));
+        out.writeInt(SWORD.length);
+        out.write(SWORD);
+        out.writeInt(1);
+        out.writeUTF("a");
+        out.writeInt(1);
+        out.writeInt(ownerIndex);
+        return Files.write(directory.resolve("item-pool.dat"), bytes.toByteArray());
+    }
+
+    @Test
+    void loadsHandWrittenPool() throws IOException {
+        ItemPool pool = new ItemPool();
+        pool.load(writePoolFile(0));
+        assertEquals(1, pool.getOwnerCount());
+        assertEquals(SWORD.length, pool.getReferencedBytes());
+    }
+
+    @Test
+    void corruptOwnerIndexFailsWithIOException() throws IOException {
+        Path file = writePoolFile(5);
+        assertThrows(IOException.class, () -> new ItemPool().load(file));
+        assertThrows(IOException.class, () -> new ItemPool().load(writePoolFile(-1)));
+    }
+
+    @Test
+    void corruptCountsFailWithIOException() throws IOException {
+        byte[] valid = Files.readAllBytes(writePoolFile(0));
+
+        // Entry count, entry length and a mismatched hash
+        for (int offset : new int[] {8, 12 + ItemPool.HASH_LENGTH, 12}) {
+            byte[] corrupt = valid.clone();
+            corrupt[offset] = (byte) 0xFF;
+            Path file = Files.write(directory.resolve("corrupt.dat"), corrupt);
+            assertThrows(IOException.class, () -> new ItemPool().load(file), "offset " + offset);
+        }
+
+        Path truncated = Files.write(directory.resolve("truncated.dat"), Arrays.copyOf(valid, 20));
+        assertThrows(IOException.class, () -> new ItemPool().load(truncated));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotPools() throws IOException {
+        Path file = Files.write(directory.resolve("item-pool.dat"), "not a pool".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new ItemPool().load(file));
+        assertTrue(Files.exists(file));
+    }
+}
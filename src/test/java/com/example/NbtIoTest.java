@@ -0,0 +1,134 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NbtIoTest {
+
+    private static byte[] write(Map<String, Object> root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.writeRoot(new DataOutputStream(bytes), root);
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Object> read(byte[] data) throws IOException {
+        return NbtIo.readRoot(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static Map<String, Object> createEveryTag() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("name", "nested");
+
+        NbtIo.NbtList strings = new NbtIo.NbtList(NbtIo.TAG_STRING);
+        strings.add("a");
+        strings.add("b");
+
+        NbtIo.NbtList compounds = new NbtIo.NbtList(NbtIo.TAG_COMPOUND);
+        compounds.add(nested);
+
+        NbtIo.NbtList innerList = new NbtIo.NbtList(NbtIo.TAG_INT);
+        innerList.add(7);
+        NbtIo.NbtList lists = new NbtIo.NbtList(NbtIo.TAG_LIST);
+        lists.add(innerList);
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("byte", (byte) -3);
+        root.put("short", (short) 1234);
+        root.put("int", 123456789);
+        root.put("long", 1234567890123L);
+        root.put("float", 1.5f);
+        root.put("double", -2.25);
+        root.put("byteArray", new byte[] {1, 2, 3});
+        root.put("string", "backpack é中");
+        root.put("strings", strings);
+        root.put("compounds", compounds);
+        root.put("lists", lists);
+        root.put("compound", nested);
+        root.put("intArray", new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
+        root.put("longArray", new long[] {Long.MIN_VALUE, Long.MAX_VALUE});
+        return root;
+    }
+
+    @Test
+    void everyTagTypeRoundTrips() throws IOException {
+        byte[] data = write(createEveryTag());
+        Map<String, Object> root = read(data);
+
+        assertEquals((byte) -3, root.get("byte"));
+        assertEquals((short) 1234, root.get("short"));
+        assertEquals(123456789, root.get("int"));
+        assertEquals(1234567890123L, root.get("long"));
+        assertEquals(1.5f, root.get("float"));
+        assertEquals(-2.25, root.get("double"));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) root.get("byteArray"));
+        assertEquals("backpack é中", root.get("string"));
+        assertEquals("nested", NbtIo.asCompound(root.get("compound")).get("name"));
+        assertArrayEquals(new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE}, (int[]) root.get("intArray"));
+        assertArrayEquals(new long[] {Long.MIN_VALUE, Long.MAX_VALUE}, (long[]) root.get("longArray"));
+
+        NbtIo.NbtList strings = assertInstanceOf(NbtIo.NbtList.class, root.get("strings"));
+        assertEquals(NbtIo.TAG_STRING, strings.getElementType());
+        assertEquals(2, strings.size());
+
+        NbtIo.NbtList lists = assertInstanceOf(NbtIo.NbtList.class, root.get("lists"));
+        assertEquals(NbtIo.TAG_LIST, lists.getElementType());
+        assertEquals(7, ((NbtIo.NbtList) lists.get(0)).get(0));
+
+        // Key order and encoding are preserved, so an untouched file is rewritten byte for byte
+        assertArrayEquals(data, write(root));
+    }
+
+    @Test
+    void emptyListsKeepTheirElementType() throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("emptyCompounds", new NbtIo.NbtList(NbtIo.TAG_COMPOUND));
+        root.put("emptyEnd", new NbtIo.NbtList(NbtIo.TAG_END));
+
+        byte[] data = write(root);
+        Map<String, Object> reread = read(data);
+
+        NbtIo.NbtList compounds = assertInstanceOf(NbtIo.NbtList.class, reread.get("emptyCompounds"));
+        assertTrue(compounds.isEmpty());
+        assertEquals(NbtIo.TAG_COMPOUND, compounds.getElementType());
+        assertEquals(NbtIo.TAG_END, ((NbtIo.NbtList) reread.get("emptyEnd")).getElementType());
+        assertArrayEquals(data, write(reread));
+    }
+
+    @Test
+    void rejectsNegativeLengths() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(NbtIo.TAG_COMPOUND);
+        out.writeUTF("");
+        out.writeByte(NbtIo.TAG_BYTE_ARRAY);
+        out.writeUTF("data");
+        out.writeInt(-1);
+
+        assertThrows(IOException.class, () -> read(bytes.toByteArray()));
+    }
+
+    @Test
+    void rejectsUnknownTagTypes() {
+        byte[] data = {NbtIo.TAG_COMPOUND, 0, 0, 42, 0, 1, 'x'};
+        assertThrows(IOException.class, () -> read(data));
+    }
+
+    @Test
+    void rejectsNonCompoundRoot() {
+        byte[] data = {NbtIo.TAG_INT, 0, 0, 0, 0, 0, 1};
+        assertThrows(IOException.class, () -> read(data));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectStreamScannerTest {
+
+    /**
+     * Writes its own data around the default fields, like the map wrappers items serialize into
+     */
+    private static class CustomItem implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String type = "DIAMOND_SWORD";
+        final int amount = 1;
+        final double[] damage = {1.5, 2.5};
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeUTF("lore");
+            out.writeObject(List.of("first", "second"));
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            in.readUTF();
+            in.readObject();
+        }
+    }
+
+    private static Object[] createSlots() {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("display-name", "Backpack");
+        meta.put("enchants", new HashMap<>(Map.of("sharpness", 5)));
+        meta.put("unit", TimeUnit.SECONDS);
+        meta.put("type", String.class);
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("type", "DIAMOND_SWORD");
+        item.put("amount", 1);
+        item.put("meta", meta);
+        item.put("bytes", new byte[3000]);
+
+        // Repeats and back references exercise the handle table
+        return new Object[] {item, null, new CustomItem(), "plain", item, new CustomItem(), new long[] {1, 2}, null};
+    }
+
+    /**
+     * Writes slots the way BackpackItem does: a count, then a marker and an object per slot
+     */
+    private static byte[] writePayload(Object[] slots) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(slots.length);
+            for (Object slot : slots) {
+                out.writeBoolean(slot != null);
+                if (slot != null) {
+                    out.writeObject(slot);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void scan(byte[] data, int slots) throws IOException {
+        ObjectStreamScanner scanner = new ObjectStreamScanner(data);
+        assertEquals(slots, scanner.readInt());
+        for (int slot = 0; slot < slots; slot++) {
+            if (scanner.readUnsignedByte() == 1) {
+                scanner.skipObject();
+            }
+        }
+        assertTrue(scanner.isAtEnd(), "trailing data");
+    }
+
+    @Test
+    void walksEverySlotToTheEnd() throws IOException {
+        Object[] slots = createSlots();
+        scan(writePayload(slots), slots.length);
+    }
+
+    @Test
+    void primitivesMaySpanDataBlocks() throws IOException {
+        // More slot markers than fit in one 1024 byte block, with no objects to flush them
+        scan(writePayload(new Object[2000]), 2000);
+    }
+
+    @Test
+    void everyTruncationIsDetected() throws IOException {
+        Object[] slots = createSlots();
+        byte[] data = writePayload(slots);
+
+        for (int length = 4; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThrows(IOException.class, () -> scan(truncated, slots.length), "length " + length);
+        }
+    }
+
+    @Test
+    void trailingDataIsDetected() throws IOException {
+        Object[] slots = createSlots();
+        byte[] valid = writePayload(slots);
+        byte[] data = Arrays.copyOf(valid, valid.length + 1);
+
+        ObjectStreamScanner scanner = new ObjectStreamScanner(data);
+        scanner.readInt();
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (scanner.readUnsignedByte() == 1) {
+                scanner.skipObject();
+            }
+        }
+        assertFalse(scanner.isAtEnd());
+    }
+
+    @Test
+    void markerWithoutAnObjectIsDetected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(2);
+            out.writeBoolean(true);
+            out.writeBoolean(false);
+        }
+
+        ObjectStreamScanner scanner = new ObjectStreamScanner(bytes.toByteArray());
+        scanner.readInt();
+        assertEquals(1, scanner.readUnsignedByte());
+        assertThrows(IOException.class, scanner::skipObject);
+    }
+
+    @Test
+    void rejectsDataThatIsNotAnObjectStream() {
+        assertThrows(IOException.class, () -> new ObjectStreamScanner(new byte[] {1, 2, 3, 4, 5}));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation benchmark for payload encoding
+ * Plain ObjectOutputStream stands in for BukkitObjectOutputStream, which only adds
+ * item resolution on top, and serialized-item maps stand in for ItemStacks
+ */
+class PayloadBuffersAllocationTest {
+
+    private static final int SLOTS = 54;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 10_000;
+
+    private static final Object[] CONTENTS = createContents();
+
+    private static Object[] createContents() {
+        Object[] contents = new Object[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            if (i % 3 == 2) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("v", 3700);
+            item.put("type", "DIAMOND_SWORD");
+            item.put("amount", 1 + i % 64);
+            item.put("name", "Sword of slot " + i);
+            item.put("lore", "A fairly long line of lore text that makes the item realistic in size " + i);
+            contents[i] = item;
+        }
+        return contents;
+    }
+
+    private static void writeContents(ObjectOutputStream dataOutput) throws IOException {
+        dataOutput.writeInt(CONTENTS.length);
+        for (Object item : CONTENTS) {
+            if (item != null) {
+                dataOutput.writeBoolean(true);
+                dataOutput.writeObject(item);
+            } else {
+                dataOutput.writeBoolean(false);
+            }
+        }
+    }
+
+    /**
+     * How saveInventory encoded before pooling: a fresh, default-sized stream per save
+     */
+    private static byte[] encodeBaseline() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ObjectOutputStream dataOutput = new ObjectOutputStream(outputStream);
+        writeContents(dataOutput);
+        dataOutput.close();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * What saveInventory passes to acquire() the first time it sees these items:
+     * estimateInventoryBytesCached has no measured sizes yet, so every item counts as a plain one
+     */
+    private static long estimateUncached() {
+        long total = PayloadBudget.HEADER_ESTIMATE;
+        for (Object item : CONTENTS) {
+            total += item != null ? PayloadBudget.PLAIN_ITEM_ESTIMATE : 1;
+        }
+        return total;
+    }
+
+    private static byte[] encodePooled(long expectedBytes) throws IOException {
+        PayloadBuffers.PayloadBuffer outputStream = PayloadBuffers.acquire(expectedBytes);
+        try {
+            ObjectOutputStream dataOutput = new ObjectOutputStream(outputStream);
+            writeContents(dataOutput);
+            dataOutput.close();
+            return outputStream.toPayload();
+        } finally {
+            PayloadBuffers.release(outputStream);
+        }
+    }
+
+    private interface Encoder {
+        byte[] encode() throws IOException;
+    }
+
+    private static long allocatedBytesPerEncode(com.sun.management.ThreadMXBean threads, Encoder encoder)
+            throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            encoder.encode();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            encoder.encode();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_ROUNDS;
+    }
+
+    @Test
+    void pooledEncodingAllocatesLessPerSave() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+            "per-thread allocation counters are not available on this JVM");
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "allocation measurement is not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        byte[] reference = encodeBaseline();
+        long expectedBytes = estimateUncached();
+        assertArrayEquals(reference, encodePooled(expectedBytes));
+
+        long baseline = allocatedBytesPerEncode(threads, PayloadBuffersAllocationTest::encodeBaseline);
+        long pooled = allocatedBytesPerEncode(threads, () -> encodePooled(expectedBytes));
+
+        assertTrue(pooled < baseline, "payload " + reference.length + " bytes, estimated " + expectedBytes
+            + ": pooled encoding allocated " + pooled + " B/encode, baseline " + baseline + " B/encode");
+    }
+}
@@ -0,0 +1,167 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionFileTest {
+
+    private static final int SECTOR_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zlib(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Builds a region file the way the game lays one out, with a gap between chunks
+     */
+    private static class RegionBuilder {
+        final ByteBuffer data = ByteBuffer.allocate(32 * SECTOR_SIZE);
+        int end = 2 * SECTOR_SIZE;
+
+        RegionBuilder chunk(int index, int sector, int compression, byte[] raw, int timestamp) {
+            int offset = sector * SECTOR_SIZE;
+            int sectors = (5 + raw.length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            data.putInt(index * 4, (sector << 8) | sectors);
+            data.putInt(SECTOR_SIZE + index * 4, timestamp);
+            data.putInt(offset, raw.length + 1);
+            data.put(offset + 4, (byte) compression);
+            data.put(offset + 5, raw);
+            end = Math.max(end, offset + sectors * SECTOR_SIZE);
+            return this;
+        }
+
+        Path write(Path file) throws IOException {
+            byte[] bytes = new byte[end];
+            data.get(0, bytes);
+            return Files.write(file, bytes);
+        }
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void readsEveryInlineCompression() throws IOException {
+        byte[] gzipChunk = "gzip chunk".getBytes();
+        byte[] zlibChunk = "zlib chunk".getBytes();
+        byte[] plainChunk = "plain chunk".getBytes();
+
+        Path file = new RegionBuilder()
+            .chunk(0, 2, 1, gzip(gzipChunk), 100)
+            .chunk(1, 3, 2, zlib(zlibChunk), 101)
+            .chunk(2, 4, 3, plainChunk, 102)
+            .chunk(3, 5, 4, new byte[] {1, 2, 3}, 103)
+            .write(directory.resolve("r.0.0.mca"));
+
+        RegionFile region = RegionFile.read(file);
+        assertArrayEquals(gzipChunk, region.readChunk(0));
+        assertArrayEquals(zlibChunk, region.readChunk(1));
+        assertArrayEquals(plainChunk, region.readChunk(2));
+
+        // LZ4 is not supported and must be reported rather than misread
+        assertTrue(region.hasChunk(3));
+        assertThrows(IOException.class, () -> region.readChunk(3));
+        assertFalse(region.hasChunk(4));
+    }
+
+    @Test
+    void saveRepacksSectorsAndPreservesTimestamps() throws IOException {
+        byte[] first = zlib("first".getBytes());
+        byte[] spanning = randomBytes(3 * SECTOR_SIZE, 1);
+        byte[] last = gzip("last".getBytes());
+
+        Path file = new RegionBuilder()
+            .chunk(0, 2, 2, first, 1000)
+            .chunk(31, 9, 3, spanning, 2000)
+            .chunk(1023, 20, 1, last, 3000)
+            .chunk(500, 25, 0x82, new byte[0], 4000)
+            .write(directory.resolve("r.0.0.mca"));
+
+        // Grow the first chunk so it no longer fits its original sector
+        byte[] grown = randomBytes(2 * SECTOR_SIZE, 2);
+        RegionFile region = RegionFile.read(file);
+        region.writeChunk(0, grown);
+        region.save();
+
+        byte[] saved = Files.readAllBytes(file);
+        assertEquals(0, saved.length % SECTOR_SIZE);
+
+        ByteBuffer buffer = ByteBuffer.wrap(saved);
+        boolean[] used = new boolean[saved.length / SECTOR_SIZE];
+        int chunks = 0;
+        for (int i = 0; i < RegionFile.CHUNK_COUNT; i++) {
+            int location = buffer.getInt(i * 4);
+            if (location == 0) {
+                continue;
+            }
+            chunks++;
+
+            int sector = location >>> 8;
+            int sectors = location & 0xFF;
+            assertTrue(sector >= 2, "chunk " + i + " overlaps the header");
+            assertTrue(sector + sectors <= used.length, "chunk " + i + " runs past the end of the file");
+            assertTrue(buffer.getInt(sector * SECTOR_SIZE) + 4 <= sectors * SECTOR_SIZE,
+                "chunk " + i + " does not fit its sectors");
+            for (int s = sector; s < sector + sectors; s++) {
+                assertFalse(used[s], "chunk " + i + " overlaps another chunk");
+                used[s] = true;
+            }
+        }
+        assertEquals(4, chunks);
+
+        assertEquals(1000, buffer.getInt(SECTOR_SIZE));
+        assertEquals(2000, buffer.getInt(SECTOR_SIZE + 31 * 4));
+        assertEquals(3000, buffer.getInt(SECTOR_SIZE + 1023 * 4));
+        assertEquals(4000, buffer.getInt(SECTOR_SIZE + 500 * 4));
+
+        RegionFile reread = RegionFile.read(file);
+        assertArrayEquals(grown, reread.readChunk(0));
+        assertArrayEquals(spanning, reread.readChunk(31));
+        assertArrayEquals("last".getBytes(), reread.readChunk(1023));
+        assertTrue(reread.isExternal(500));
+        assertFalse(reread.hasChunk(500));
+    }
+
+    @Test
+    void rejectsChunksOutsideTheFile() throws IOException {
+        byte[] data = new byte[2 * SECTOR_SIZE];
+        ByteBuffer.wrap(data).putInt(0, (40 << 8) | 1);
+        Path file = Files.write(directory.resolve("r.0.0.mca"), data);
+
+        assertThrows(IOException.class, () -> RegionFile.read(file));
+    }
+}